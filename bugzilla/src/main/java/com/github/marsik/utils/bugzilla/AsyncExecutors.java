@@ -0,0 +1,31 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executors suitable for running many blocking bugzilla calls at once.
+ */
+@Slf4j
+public final class AsyncExecutors {
+    private AsyncExecutors() {
+    }
+
+    /**
+     * Returns an executor that starts a new virtual thread per task when
+     * the runtime supports them (Java 21+). Older runtimes get a cached
+     * thread pool instead.
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("Virtual threads are not available, using a cached thread pool");
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
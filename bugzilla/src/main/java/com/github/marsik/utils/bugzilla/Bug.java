@@ -1,11 +1,33 @@
 package com.github.marsik.utils.bugzilla;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Bug extends CallDictResult {
+    /**
+     * History field reporting flag changes, ex. "ovirt-4.2?" replaced by "ovirt-4.2+"
+     */
+    static final String FLAG_FIELD = "flagtypes.name";
+    private static final String FLAG_STATES = "?+-";
+
+    /**
+     * Notified after the bug was modified through put, remove or
+     * {@link #applyChange}, on the thread that made the change.
+     */
+    public interface ChangeListener {
+        void bugChanged(Bug bug);
+    }
+
+    private transient volatile int revision;
+    private transient volatile List<ChangeListener> listeners;
+
     public Bug(int initialCapacity, float loadFactor) {
         super(initialCapacity, loadFactor);
     }
@@ -22,20 +44,179 @@ public class Bug extends CallDictResult {
         super(m);
     }
 
+    /**
+     * Incremented on every modification made through put, remove or
+     * {@link #applyChange}, {@link BugProxy} uses it to drop stale cached values.
+     */
+    int getRevision() {
+        return revision;
+    }
+
+    public synchronized void addChangeListener(ChangeListener listener) {
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    public synchronized void removeChangeListener(ChangeListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void changed() {
+        revision++;
+        List<ChangeListener> current = listeners;
+        if (current != null) {
+            for (ChangeListener listener: current) {
+                listener.bugChanged(this);
+            }
+        }
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object previous = super.put(key, value);
+        changed();
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        super.putAll(m);
+        changed();
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Object previous = super.remove(key);
+        changed();
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        changed();
+    }
+
+    /**
+     * Apply a single change as reported by Bug.history. Multi-valued fields
+     * (collections or arrays as returned by XML-RPC) get the old value removed
+     * and the new value added unless it is already present, so replaying
+     * the same change twice is harmless. Values are compared by their string
+     * form as history reports ids as strings.
+     */
+    @SuppressWarnings("unchecked")
     public void applyChange(String field, Object oldValue, Object newValue) {
         computeIfAbsent(field, key -> new ArrayList<>());
         compute(field, (_f, value) -> {
+           if (value instanceof Object[]) {
+               value = new ArrayList<>(Arrays.asList((Object[]) value));
+           }
+
            if (value instanceof Collection) {
+               final Collection<Object> values = (Collection<Object>) value;
                if (oldValue != null) {
-                   ((Collection) value).remove(oldValue);
+                   values.removeIf(v -> v.toString().equals(oldValue.toString()));
                }
-               if (newValue != null && !newValue.toString().trim().isEmpty()) {
-                   ((Collection) value).add(newValue);
+               if (newValue != null && !newValue.toString().trim().isEmpty()
+                       && values.stream().noneMatch(v -> v.toString().equals(newValue.toString()))) {
+                   values.add(newValue);
                }
                return value;
            } else {
                return newValue;
            }
         });
+        changed();
+    }
+
+    /**
+     * Apply a change as reported by Bug.history. History reports all values
+     * of a multi-valued field as a single comma separated string, they are
+     * split and applied one by one. Flag changes (flagtypes.name) are
+     * applied to the flags field, see {@link #applyFlagChange}.
+     */
+    public void applyHistoryChange(String field, Object removed, Object added) {
+        if (FLAG_FIELD.equals(field)) {
+            applyFlagChange(removed, added);
+            return;
+        }
+
+        Object current = get(field);
+        if (!(current instanceof Collection || current instanceof Object[])) {
+            applyChange(field, removed, added);
+            return;
+        }
+
+        for (String value: splitValues(removed)) {
+            applyChange(field, value, null);
+        }
+        for (String value: splitValues(added)) {
+            applyChange(field, null, value);
+        }
+    }
+
+    /**
+     * Apply a flag change as reported by Bug.history (field flagtypes.name),
+     * ex. removed "ovirt-4.2? (user@example.com)" and added "ovirt-4.2+".
+     * The flags field keeps the Bug.get format, a list of maps with the
+     * flag name, status and modification_date.
+     */
+    public void applyFlagChange(Object removed, Object added) {
+        List<Object> flags = new ArrayList<>(getList("flags"));
+        for (String value: splitValues(removed)) {
+            String flag = flagName(value);
+            flags.removeIf(f -> flag.equals(flagOf(f)));
+        }
+        for (String value: splitValues(added)) {
+            String flag = flagName(value);
+            if (flag.isEmpty() || FLAG_STATES.indexOf(flag.charAt(flag.length() - 1)) < 0) {
+                continue;
+            }
+
+            flags.removeIf(f -> flag.equals(flagOf(f)));
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("name", flag.substring(0, flag.length() - 1));
+            entry.put("status", flag.substring(flag.length() - 1));
+            entry.put("modification_date", new Date());
+            flags.add(entry);
+        }
+        put("flags", flags);
+    }
+
+    /**
+     * @return flag with its status, ex. "ovirt-4.2+", for an entry of the flags field
+     */
+    static String flagOf(Object entry) {
+        if (entry instanceof Map) {
+            Map<?, ?> flag = (Map<?, ?>) entry;
+            return String.valueOf(flag.get("name")) + flag.get("status");
+        }
+        return String.valueOf(entry);
+    }
+
+    /**
+     * Strips the requestee from a flag reported by Bug.history
+     */
+    static String flagName(String value) {
+        int requestee = value.indexOf(" (");
+        return requestee < 0 ? value.trim() : value.substring(0, requestee).trim();
+    }
+
+    static List<String> splitValues(Object value) {
+        if (value == null || value.toString().trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> values = new ArrayList<>();
+        for (String item: value.toString().split(",")) {
+            if (!item.trim().isEmpty()) {
+                values.add(item.trim());
+            }
+        }
+        return values;
     }
 }
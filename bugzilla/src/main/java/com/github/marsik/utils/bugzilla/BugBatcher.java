@@ -0,0 +1,175 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BugBatcher merges single bug lookups from many threads into a single
+ * Bug.get call.
+ *
+ * Requested ids are collected until the batch window elapses (counted
+ * from the first id of the batch) or until the batch reaches the maximum
+ * size, whichever comes first. Each caller gets a future that is completed
+ * with its own bug. Ids Bugzilla did not return complete the future with
+ * {@link NoSuchElementException}, ids from a failed chunk complete it with
+ * the {@link BugzillaPartialResultException}.
+ */
+@Slf4j
+public class BugBatcher implements AutoCloseable {
+    private final BugzillaClient client;
+    private final Multimap<String, Object> params;
+    private final long window;
+    private final TimeUnit unit;
+    private final int maxBatchSize;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+
+    private Map<String, CompletableFuture<Bug>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public BugBatcher(BugzillaClient client, long window, TimeUnit unit, int maxBatchSize) {
+        this(client, ArrayListMultimap.create(0, 0), window, unit, maxBatchSize);
+    }
+
+    /**
+     * @param params additional Bug.get parameters used for every batch (e.g. include_fields)
+     */
+    public BugBatcher(BugzillaClient client, Multimap<String, Object> params,
+                      long window, TimeUnit unit, int maxBatchSize) {
+        this.client = client;
+        this.params = ArrayListMultimap.create(params);
+        this.window = window;
+        this.unit = unit;
+        this.maxBatchSize = maxBatchSize;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("bugzilla-batcher-%d")
+                .build());
+        this.executor = AsyncExecutors.newPerTaskExecutor();
+    }
+
+    /**
+     * Requests for an id that is already waiting in the current batch
+     * share the same future.
+     */
+    public synchronized CompletableFuture<Bug> getBug(String id) {
+        CompletableFuture<Bug> future = pending.get(id);
+        if (future != null) {
+            return future;
+        }
+
+        future = new CompletableFuture<>();
+        pending.put(id, future);
+
+        if (pending.size() >= maxBatchSize) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(this::flush, window, unit);
+        }
+
+        return future;
+    }
+
+    public CompletableFuture<List<Bug>> getBugs(Collection<String> ids) {
+        List<CompletableFuture<Bug>> futures = new ArrayList<>(ids.size());
+        for (String id: ids) {
+            futures.add(getBug(id));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    List<Bug> bugs = new ArrayList<>(futures.size());
+                    futures.forEach(f -> bugs.add(f.join()));
+                    return bugs;
+                });
+    }
+
+    /**
+     * Send the current batch immediately.
+     */
+    public synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final Map<String, CompletableFuture<Bug>> batch = pending;
+        pending = new LinkedHashMap<>();
+        executor.execute(() -> fetch(batch));
+    }
+
+    private void fetch(Map<String, CompletableFuture<Bug>> batch) {
+        log.debug("Fetching a batch of {} bugs", batch.size());
+        Iterable<Bug> bugs;
+        Set<String> failed = Collections.emptySet();
+        BugzillaPartialResultException partial = null;
+        try {
+            bugs = client.getBugs(batch.keySet(), params);
+        } catch (BugzillaPartialResultException e) {
+            bugs = e.getBugs();
+            failed = new HashSet<>(e.getFailedIds());
+            partial = e;
+        } catch (RuntimeException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+
+        for (Bug bug: bugs) {
+            complete(batch, bug.get("id"), bug);
+            bug.getList("alias").forEach(alias -> complete(batch, alias, bug));
+        }
+
+        for (Map.Entry<String, CompletableFuture<Bug>> entry: batch.entrySet()) {
+            if (failed.contains(entry.getKey())) {
+                entry.getValue().completeExceptionally(partial);
+            } else {
+                entry.getValue().completeExceptionally(new NoSuchElementException("Bug " + entry.getKey() + " was not found."));
+            }
+        }
+    }
+
+    private static void complete(Map<String, CompletableFuture<Bug>> batch, Object id, Bug bug) {
+        if (id == null) {
+            return;
+        }
+
+        CompletableFuture<Bug> future = batch.get(id.toString());
+        if (future != null) {
+            future.complete(bug);
+        }
+    }
+
+    /**
+     * Sends the pending batch and stops accepting new ones.
+     */
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+}
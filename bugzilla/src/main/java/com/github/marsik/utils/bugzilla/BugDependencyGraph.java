@@ -0,0 +1,336 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multimap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dependency graph built from the blocks and depends_on fields of fetched bugs.
+ *
+ * Every bug is a node with its edges stored as int arrays of bug ids. Bugs
+ * referenced by an edge but not added to the graph are "missing", they are
+ * reported by the traversals but cannot be expanded until they are
+ * fetched, see {@link #fetchMissingDependencies(BugzillaClient, int)}.
+ *
+ * The graph is not thread safe.
+ */
+@Slf4j
+public class BugDependencyGraph {
+    private static final Set<String> CLOSED_STATES = ImmutableSet.of("RESOLVED", "VERIFIED", "RELEASE_PENDING", "CLOSED");
+    private static final int[] NO_NODES = new int[0];
+
+    private enum Select {
+        ALL, OPEN, MISSING
+    }
+
+    private final Map<Integer, Integer> nodes = new HashMap<>();
+    private final Set<Integer> unavailable = new HashSet<>();
+    private int[] ids = new int[16];
+    private int[][] dependsOn = new int[16][];
+    private int[][] blocks = new int[16][];
+    private final BitSet open = new BitSet();
+    private int size = 0;
+
+    public void add(Bug bug) {
+        int id = Integer.parseInt(bug.get("id").toString());
+        Integer node = nodes.get(id);
+        if (node == null) {
+            node = size++;
+            if (node == ids.length) {
+                ids = Arrays.copyOf(ids, node * 2);
+                dependsOn = Arrays.copyOf(dependsOn, node * 2);
+                blocks = Arrays.copyOf(blocks, node * 2);
+            }
+            nodes.put(id, node);
+            ids[node] = id;
+        }
+
+        dependsOn[node] = CompactBug.toIntArray(bug.get("depends_on"));
+        blocks[node] = CompactBug.toIntArray(bug.get("blocks"));
+        open.set(node, isOpen(bug));
+    }
+
+    public void addAll(Iterable<Bug> bugs) {
+        for (Bug bug: bugs) {
+            add(bug);
+        }
+    }
+
+    public boolean contains(int id) {
+        return nodes.containsKey(id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bugzilla reports is_open when asked for it, the status name is
+     * used as a fallback.
+     */
+    private static boolean isOpen(Bug bug) {
+        Object isOpen = bug.get("is_open");
+        if (isOpen instanceof Boolean) {
+            return (Boolean) isOpen;
+        }
+
+        Object status = bug.get("status");
+        return status == null || !CLOSED_STATES.contains(status.toString());
+    }
+
+    /**
+     * @return ids of all bugs the given bug transitively depends on (including missing ones)
+     */
+    public int[] transitiveDependsOn(int id) {
+        return traverse(id, dependsOn, Select.ALL);
+    }
+
+    /**
+     * @return ids of all bugs the given bug transitively blocks (including missing ones)
+     */
+    public int[] transitiveBlocks(int id) {
+        return traverse(id, blocks, Select.ALL);
+    }
+
+    /**
+     * Blockers missing from the graph (not fetched yet, private or deleted)
+     * are not included as their state is not known, see {@link #unknownBlockers}.
+     *
+     * @return ids of all open bugs the given bug transitively depends on,
+     * closed blockers are traversed too as they can depend on open bugs
+     */
+    public int[] openBlockers(int id) {
+        return traverse(id, dependsOn, Select.OPEN);
+    }
+
+    /**
+     * @return ids of the bugs missing from the graph the given bug transitively
+     * depends on, they may or may not be open blockers
+     */
+    public int[] unknownBlockers(int id) {
+        return traverse(id, dependsOn, Select.MISSING);
+    }
+
+    private int[] traverse(int id, int[][] edges, Select select) {
+        Integer start = nodes.get(id);
+        if (start == null) {
+            return NO_NODES;
+        }
+
+        BitSet visited = new BitSet(size);
+        Set<Integer> missing = new HashSet<>();
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+
+        int[] result = new int[16];
+        int found = 0;
+
+        queue[tail++] = start;
+        visited.set(start);
+        while (head < tail) {
+            for (int target: edges[queue[head++]]) {
+                Integer node = nodes.get(target);
+                if (node == null) {
+                    if (select != Select.OPEN && missing.add(target)) {
+                        result = append(result, found++, target);
+                    }
+                } else if (!visited.get(node)) {
+                    visited.set(node);
+                    queue[tail++] = node;
+                    if (select == Select.ALL || (select == Select.OPEN && open.get(node))) {
+                        result = append(result, found++, target);
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(result, found);
+    }
+
+    private static int[] append(int[] array, int position, int value) {
+        if (position == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[position] = value;
+        return array;
+    }
+
+    public boolean hasCycle() {
+        return !findCycles().isEmpty();
+    }
+
+    /**
+     * Find the depends_on cycles using Tarjan's strongly connected
+     * components algorithm.
+     *
+     * @return ids of the bugs forming each cycle
+     */
+    public List<int[]> findCycles() {
+        int[] index = new int[size];
+        int[] low = new int[size];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int sp = 0;
+        int[] callStack = new int[size];
+        int[] edgePosition = new int[size];
+        int csp = 0;
+        int counter = 0;
+
+        List<int[]> cycles = new ArrayList<>();
+        for (int root = 0; root < size; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            callStack[csp] = root;
+            edgePosition[csp++] = 0;
+
+            while (csp > 0) {
+                int v = callStack[csp - 1];
+                int[] edges = dependsOn[v];
+                if (edgePosition[csp - 1] < edges.length) {
+                    Integer w = nodes.get(edges[edgePosition[csp - 1]++]);
+                    if (w == null) {
+                        continue;
+                    }
+
+                    if (index[w] == -1) {
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        callStack[csp] = w;
+                        edgePosition[csp++] = 0;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+
+                csp--;
+                if (csp > 0) {
+                    int parent = callStack[csp - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+
+                if (low[v] == index[v]) {
+                    int end = sp;
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                    } while (w != v);
+
+                    if (end - sp > 1 || dependsOnItself(v)) {
+                        int[] cycle = new int[end - sp];
+                        for (int i = 0; i < cycle.length; i++) {
+                            cycle[i] = ids[stack[sp + i]];
+                        }
+                        cycles.add(cycle);
+                    }
+                }
+            }
+        }
+
+        return cycles;
+    }
+
+    private boolean dependsOnItself(int node) {
+        for (int target: dependsOn[node]) {
+            if (target == ids[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return ids referenced by depends_on edges that are not part of the graph
+     */
+    public int[] missingDependencies() {
+        Set<Integer> missing = new HashSet<>();
+        for (int node = 0; node < size; node++) {
+            for (int target: dependsOn[node]) {
+                if (!nodes.containsKey(target) && !unavailable.contains(target)) {
+                    missing.add(target);
+                }
+            }
+        }
+        return missing.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Fetch the missing dependencies level by level, using a single batched
+     * Bug.get call per level. Bugs Bugzilla did not return (private
+     * or deleted) are not requested again.
+     *
+     * When a chunk of the request fails the fetched bugs are added and the
+     * {@link BugzillaPartialResultException} is rethrown, the ids that failed
+     * stay missing.
+     *
+     * @param maxDepth maximum number of levels to fetch
+     * @return number of bugs added to the graph
+     */
+    public int fetchMissingDependencies(BugzillaClient client, int maxDepth) {
+        Multimap<String, Object> params = ArrayListMultimap.create();
+        for (String field: Arrays.asList("id", "status", "is_open", "blocks", "depends_on")) {
+            params.put("include_fields", field);
+        }
+
+        int added = 0;
+        for (int level = 0; level < maxDepth; level++) {
+            int[] missing = missingDependencies();
+            if (missing.length == 0) {
+                break;
+            }
+
+            List<String> request = new ArrayList<>(missing.length);
+            for (int id: missing) {
+                request.add(Integer.toString(id));
+            }
+
+            Iterable<Bug> bugs;
+            BugzillaPartialResultException partial = null;
+            try {
+                bugs = client.getBugs(request, params);
+            } catch (BugzillaPartialResultException e) {
+                bugs = e.getBugs();
+                partial = e;
+            }
+
+            int before = size;
+            addAll(bugs);
+            added += size - before;
+            log.debug("Dependency level {}: requested {} bugs, received {}", level + 1, missing.length, size - before);
+
+            Set<String> failed = partial == null ? Collections.emptySet() : new HashSet<>(partial.getFailedIds());
+            for (int id: missing) {
+                if (!nodes.containsKey(id) && !failed.contains(Integer.toString(id))) {
+                    unavailable.add(id);
+                }
+            }
+
+            if (partial != null) {
+                // The failed ids are still missing and will be requested by the next call
+                throw partial;
+            }
+        }
+
+        return added;
+    }
+}
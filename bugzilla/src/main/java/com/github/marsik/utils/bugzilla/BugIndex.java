@@ -0,0 +1,341 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * In-memory bug store with inverted bitmap indexes on the commonly
+ * filtered fields, flags and keywords.
+ *
+ * Every bug gets an ordinal and each indexed value keeps a BitSet of the
+ * ordinals having it, compound queries are evaluated as bitwise operations.
+ *
+ * Ex.:
+ *
+ * index.query()
+ *     .approvedFor("ovirt-4.2.0")
+ *     .notFutureFlagged()
+ *     .in(BugIndex.Field.STATUS, "NEW", "ASSIGNED", "POST")
+ *     .list();
+ *
+ * The index listens to the changes of the indexed bugs, modifications made
+ * through {@link Bug} (put, remove, {@link Bug#applyChange}) or through
+ * {@link #applyChange(String, String, Object, Object)} update the indexes of
+ * the affected bug. Use {@link #reindex(String)} when a value held by the bug
+ * (a list) was modified in place or flags were loaded into the proxy.
+ */
+public class BugIndex {
+    public enum Field {
+        STATUS, PRODUCT, ASSIGNED_TO, TARGET_RELEASE, TARGET_MILESTONE, KEYWORD, FLAG
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<BugProxy> bugs = new ArrayList<>();
+    private final List<Multimap<Field, String>> indexedValues = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet free = new BitSet();
+    private final BitSet futureFlagged = new BitSet();
+    private final Map<Field, Map<String, BitSet>> indexes = new EnumMap<>(Field.class);
+    private final Bug.ChangeListener listener = this::bugChanged;
+
+    public BugIndex() {
+        for (Field field: Field.values()) {
+            indexes.put(field, new HashMap<>());
+        }
+    }
+
+    public void add(BugProxy bug) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(bug.getId());
+            if (ordinal == null) {
+                // Reuse the lowest free ordinal to keep the BitSets compact
+                ordinal = free.nextSetBit(0);
+                if (ordinal >= 0) {
+                    free.clear(ordinal);
+                    bugs.set(ordinal, bug);
+                } else {
+                    ordinal = bugs.size();
+                    bugs.add(bug);
+                    indexedValues.add(null);
+                }
+                ordinals.put(bug.getId(), ordinal);
+            } else {
+                unindex(ordinal);
+                bugs.get(ordinal).getBug().removeChangeListener(listener);
+                bugs.set(ordinal, bug);
+            }
+            bug.getBug().addChangeListener(listener);
+            index(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Iterable<BugProxy> bugs) {
+        for (BugProxy bug: bugs) {
+            add(bug);
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal != null) {
+                unindex(ordinal);
+                bugs.get(ordinal).getBug().removeChangeListener(listener);
+                bugs.set(ordinal, null);
+                free.set(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public BugProxy get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            return ordinal == null ? null : bugs.get(ordinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a history change to the bug and update its index entries.
+     * Comma separated values of multi-valued fields are applied one by one,
+     * flag changes (flagtypes.name) update the flags of the bug.
+     *
+     * @return false when the bug is not part of the index
+     */
+    public boolean applyChange(String id, String field, Object oldValue, Object newValue) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                return false;
+            }
+
+            BugProxy bug = bugs.get(ordinal);
+            if (Bug.FLAG_FIELD.equals(field)) {
+                bug.applyFlagChange(oldValue, newValue);
+            } else {
+                bug.getBug().applyHistoryChange(field, oldValue, newValue);
+            }
+            unindex(ordinal);
+            index(ordinal);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void reindex(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal != null) {
+                bugs.get(ordinal).invalidate();
+                unindex(ordinal);
+                index(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void bugChanged(Bug bug) {
+        lock.writeLock().lock();
+        try {
+            Object id = bug.get("id");
+            Integer ordinal = id == null ? null : ordinals.get(id.toString());
+            if (ordinal != null && bugs.get(ordinal).getBug() == bug) {
+                unindex(ordinal);
+                index(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(int ordinal) {
+        BugProxy bug = bugs.get(ordinal);
+        Bug raw = bug.getBug();
+        Multimap<Field, String> values = ArrayListMultimap.create();
+
+        putIfPresent(values, Field.STATUS, raw.get("status"));
+        putIfPresent(values, Field.PRODUCT, raw.get("product"));
+        putIfPresent(values, Field.ASSIGNED_TO, raw.get("assigned_to"));
+        if (raw.get("target_release") != null) {
+            values.put(Field.TARGET_RELEASE, bug.getTargetRelease());
+        }
+        if (raw.get("target_milestone") != null) {
+            values.put(Field.TARGET_MILESTONE, bug.getTargetMilestone());
+        }
+        values.putAll(Field.KEYWORD, bug.getKeywords());
+
+        boolean future = false;
+        for (BugzillaBugFlag flag: bug.getFlags()) {
+            values.put(Field.FLAG, flag.getFlag());
+            future |= flag.futureFlag();
+        }
+
+        for (Map.Entry<Field, String> value: values.entries()) {
+            indexes.get(value.getKey()).computeIfAbsent(value.getValue(), k -> new BitSet()).set(ordinal);
+        }
+
+        futureFlagged.set(ordinal, future);
+        live.set(ordinal);
+        indexedValues.set(ordinal, values);
+    }
+
+    private void unindex(int ordinal) {
+        Multimap<Field, String> values = indexedValues.get(ordinal);
+        if (values != null) {
+            for (Map.Entry<Field, String> value: values.entries()) {
+                Map<String, BitSet> index = indexes.get(value.getKey());
+                BitSet postings = index.get(value.getValue());
+                if (postings != null) {
+                    postings.clear(ordinal);
+                    if (postings.isEmpty()) {
+                        index.remove(value.getValue());
+                    }
+                }
+            }
+        }
+
+        futureFlagged.clear(ordinal);
+        live.clear(ordinal);
+        indexedValues.set(ordinal, null);
+    }
+
+    private static void putIfPresent(Multimap<Field, String> values, Field field, Object value) {
+        if (value != null) {
+            values.put(field, value.toString());
+        }
+    }
+
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Compound query, all conditions must match. The query is evaluated
+     * by {@link #list()} or {@link #count()}.
+     */
+    public class Query {
+        private final List<Consumer<BitSet>> conditions = new ArrayList<>();
+
+        private Query() {
+        }
+
+        public Query is(Field field, String value) {
+            return in(field, Collections.singletonList(value));
+        }
+
+        public Query in(Field field, String... values) {
+            return in(field, Arrays.asList(values));
+        }
+
+        public Query in(Field field, Collection<String> values) {
+            conditions.add(result -> result.and(union(field, values)));
+            return this;
+        }
+
+        public Query not(Field field, String... values) {
+            conditions.add(result -> result.andNot(union(field, Arrays.asList(values))));
+            return this;
+        }
+
+        public Query approvedFor(String targetRelease) {
+            return is(Field.FLAG, targetRelease + "+");
+        }
+
+        public Query futureFlagged() {
+            conditions.add(result -> result.and(futureFlagged));
+            return this;
+        }
+
+        public Query notFutureFlagged() {
+            conditions.add(result -> result.andNot(futureFlagged));
+            return this;
+        }
+
+        public Query keyword(String keyword) {
+            return is(Field.KEYWORD, keyword);
+        }
+
+        public Query assignedTo(String assignee) {
+            return is(Field.ASSIGNED_TO, assignee);
+        }
+
+        public List<BugProxy> list() {
+            lock.readLock().lock();
+            try {
+                BitSet result = evaluate();
+                List<BugProxy> matches = new ArrayList<>(result.cardinality());
+                for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+                    matches.add(bugs.get(i));
+                }
+                return matches;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public int count() {
+            lock.readLock().lock();
+            try {
+                return evaluate().cardinality();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private BitSet evaluate() {
+            BitSet result = (BitSet) live.clone();
+            for (Consumer<BitSet> condition: conditions) {
+                condition.accept(result);
+            }
+            return result;
+        }
+
+        private BitSet union(Field field, Collection<String> values) {
+            Map<String, BitSet> index = indexes.get(field);
+            BitSet union = new BitSet();
+            for (String value: values) {
+                BitSet postings = index.get(value);
+                if (postings != null) {
+                    union.or(postings);
+                }
+            }
+            return union;
+        }
+    }
+}
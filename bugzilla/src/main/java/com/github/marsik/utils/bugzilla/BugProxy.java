@@ -3,6 +3,7 @@ package com.github.marsik.utils.bugzilla;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -12,16 +13,81 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * Typed view of a Bug. The split lists and parsed dates are computed
+ * on first use and kept until the underlying bug is modified, the list
+ * getters return unmodifiable lists.
+ */
 public class BugProxy {
+    private static final Pattern SPACES = Pattern.compile(" +");
+
     private final Bug bug;
     private final Set<BugzillaBugFlag> flags = new HashSet<>();
 
+    private volatile Cached<List<String>> keywords;
+    private volatile Cached<List<String>> blocks;
+    private volatile Cached<List<String>> dependsOn;
+    private volatile Cached<Map<String, Date>> dates;
+    private volatile Cached<Set<BugzillaBugFlag>> allFlags;
+    private volatile int invalidations;
+
+    /**
+     * Derived value paired with the state it was computed from, a value
+     * stored by a racing reader after a change is never returned.
+     */
+    private static class Cached<T> {
+        private final long stamp;
+        private final T value;
+
+        Cached(long stamp, T value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
+
     public BugProxy(Bug bug) {
         this.bug = bug;
     }
 
+    /**
+     * Wrap all bugs at once.
+     */
+    public static List<BugProxy> wrap(Iterable<Bug> bugs) {
+        List<BugProxy> proxies = bugs instanceof Collection
+                ? new ArrayList<>(((Collection<Bug>) bugs).size())
+                : new ArrayList<>();
+        for (Bug bug: bugs) {
+            proxies.add(new BugProxy(bug));
+        }
+        return proxies;
+    }
+
+    /**
+     * Drop the cached derived values. Changes made through the Bug are
+     * detected automatically, this is only needed when a value held by
+     * the bug (a list) was modified in place.
+     */
+    public synchronized void invalidate() {
+        invalidations++;
+        keywords = null;
+        blocks = null;
+        dependsOn = null;
+        dates = null;
+        allFlags = null;
+    }
+
+    private long stamp() {
+        return ((long) invalidations << 32) | (bug.getRevision() & 0xffffffffL);
+    }
+
+    private static <T> T valid(Cached<T> cached, long stamp) {
+        return cached != null && cached.stamp == stamp ? cached.value : null;
+    }
+
     public Bug getBug() {
         return bug;
     }
@@ -68,8 +134,17 @@ public class BugProxy {
         if (val instanceof Date) {
             return (Date)val;
         } else if (val instanceof String) {
-            TemporalAccessor acc = DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse((String)val);
-            return Date.from(Instant.from(acc));
+            long stamp = stamp();
+            Map<String, Date> parsed = valid(dates, stamp);
+            if (parsed == null) {
+                parsed = new ConcurrentHashMap<>(4);
+                dates = new Cached<>(stamp, parsed);
+            }
+
+            return parsed.computeIfAbsent(key, k -> {
+                TemporalAccessor acc = DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse((String)val);
+                return Date.from(Instant.from(acc));
+            });
         }
 
         throw new IllegalArgumentException("Unknown date format " + val.toString());
@@ -117,32 +192,103 @@ public class BugProxy {
                 .map(v -> (Arrays.asList(((String)v).split(" +"))))
                 .flatMap(Collection::stream).collect(Collectors.toList());
 
-        for (Object flag0: flags) {
-            Map<String,Object> flag = (Map<String,Object>)flag0;
-            this.flags.add(new BugzillaBugFlag(flag));
+        synchronized (this.flags) {
+            for (Object flag0: flags) {
+                Map<String,Object> flag = (Map<String,Object>)flag0;
+                this.flags.add(new BugzillaBugFlag(flag));
+            }
         }
+        invalidate();
     }
 
+    /**
+     * Apply a flag change as reported by Bug.history (field flagtypes.name),
+     * ex. removed "ovirt-4.2? (user@example.com)" and added "ovirt-4.2+".
+     * The flags field of the bug is updated, see {@link Bug#applyFlagChange}.
+     */
+    public void applyFlagChange(Object removed, Object added) {
+        synchronized (flags) {
+            for (String value: Bug.splitValues(removed)) {
+                flags.remove(new BugzillaBugFlag(Bug.flagName(value)));
+            }
+        }
+        bug.applyFlagChange(removed, added);
+    }
+
+    /**
+     * @return flags of the bug (the flags field) together with the loaded ones
+     */
     public Set<BugzillaBugFlag> getFlags() {
-        return Collections.unmodifiableSet(flags);
+        long stamp = stamp();
+        Set<BugzillaBugFlag> value = valid(allFlags, stamp);
+        if (value == null) {
+            value = collectFlags();
+            allFlags = new Cached<>(stamp, value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<BugzillaBugFlag> collectFlags() {
+        Set<BugzillaBugFlag> all = new HashSet<>();
+        for (Object entry: getList("flags")) {
+            if (entry instanceof Map && ((Map<String, Object>) entry).get("modification_date") instanceof Date) {
+                all.add(new BugzillaBugFlag((Map<String, Object>) entry));
+            } else if (entry instanceof Map) {
+                all.add(new BugzillaBugFlag(Bug.flagOf(entry)));
+            } else {
+                for (String flag: SPACES.split(entry.toString().trim())) {
+                    all.add(new BugzillaBugFlag(flag));
+                }
+            }
+        }
+        synchronized (flags) {
+            all.addAll(flags);
+        }
+        return Collections.unmodifiableSet(all);
     }
 
     public List<String> getKeywords() {
-        return getList("keywords").stream()
-                .map(v -> (Arrays.asList(((String)v).split(" +"))))
-                .flatMap(Collection::stream).collect(Collectors.toList());
+        long stamp = stamp();
+        List<String> value = valid(keywords, stamp);
+        if (value == null) {
+            value = splitList("keywords");
+            keywords = new Cached<>(stamp, value);
+        }
+        return value;
     }
 
     public List<String> getBlocks() {
-        return getList("blocks").stream()
-                .map(v -> (Arrays.asList((v.toString()).split(" +"))))
-                .flatMap(Collection::stream).collect(Collectors.toList());
+        long stamp = stamp();
+        List<String> value = valid(blocks, stamp);
+        if (value == null) {
+            value = splitList("blocks");
+            blocks = new Cached<>(stamp, value);
+        }
+        return value;
     }
 
     public List<String> getDependsOn() {
-        return getList("depends_on").stream()
-                .map(v -> (Arrays.asList((v.toString()).split(" +"))))
-                .flatMap(Collection::stream).collect(Collectors.toList());
+        long stamp = stamp();
+        List<String> value = valid(dependsOn, stamp);
+        if (value == null) {
+            value = splitList("depends_on");
+            dependsOn = new Cached<>(stamp, value);
+        }
+        return value;
+    }
+
+    private List<String> splitList(String key) {
+        List<Object> raw = getList(key);
+        if (raw.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> values = new ArrayList<>(raw.size());
+        for (Object v: raw) {
+            values.addAll(Arrays.asList(SPACES.split(v.toString())));
+        }
+        return Collections.unmodifiableList(values);
     }
 
     public String getPmScore() {
@@ -0,0 +1,333 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persistent store of bugs, their comments and history and of the sync
+ * watermark, used to warm start {@link BugSynchronizer} without downloading
+ * everything again.
+ *
+ * All updates are appended to a single log file as length prefixed binary
+ * records, the newest record for a bug wins. The log is read through a
+ * memory mapped buffer and rewritten with only the live records by
+ * {@link #compact()}. {@link #flush()} compacts the log automatically once
+ * less than half of its records are live (the newest bug, comments, history
+ * and watermark records).
+ *
+ * A record torn by a crash at the end of the log is ignored.
+ */
+@Slf4j
+public class BugSnapshotStore implements Closeable {
+    private static final String LOG_FILE = "bugs.log";
+    private static final int MIN_RECORDS_TO_COMPACT = 10000;
+
+    private static final byte BUG = 1;
+    private static final byte COMMENTS = 2;
+    private static final byte HISTORY = 3;
+    private static final byte WATERMARK = 4;
+    private static final byte DELETE = 5;
+
+    private final Path directory;
+    private final Path logFile;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(4096);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+
+    private FileChannel channel;
+    private DataOutputStream out;
+    private long records = 0;
+    private final Set<Entry> live = new HashSet<>();
+
+    @Value
+    private static class Entry {
+        byte type;
+        String id;
+    }
+
+    @Value
+    public static class Snapshot {
+        Map<String, Bug> bugs;
+        Map<String, CallDictResult> comments;
+        Map<String, CallDictResult> history;
+        Instant watermark;
+    }
+
+    public BugSnapshotStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.logFile = directory.resolve(LOG_FILE);
+    }
+
+    /**
+     * Read the current state of the store.
+     */
+    public synchronized Snapshot load() throws IOException {
+        closeLog();
+
+        Map<String, Bug> bugs = new HashMap<>();
+        Map<String, CallDictResult> comments = new HashMap<>();
+        Map<String, CallDictResult> history = new HashMap<>();
+        Instant watermark = null;
+
+        records = 0;
+        live.clear();
+
+        if (!Files.exists(logFile)) {
+            return new Snapshot(bugs, comments, history, null);
+        }
+
+        long validLength = 0;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot log " + logFile + " is too large to be mapped, compact it first.");
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                while (buffer.remaining() >= 4) {
+                    int length = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining()) {
+                        break;
+                    }
+
+                    // Buffer casts keep the Java 8 signatures when built on a newer JDK
+                    ByteBuffer data = buffer.slice();
+                    ((Buffer) data).limit(length);
+                    ((Buffer) buffer).position(buffer.position() + length);
+
+                    byte type;
+                    String id;
+                    try {
+                        type = data.get();
+                        id = SnapshotCodec.readString(data);
+                        switch (type) {
+                            case BUG:
+                                bugs.put(id, new Bug(SnapshotCodec.readMap(data)));
+                                break;
+                            case COMMENTS:
+                                comments.put(id, new CallDictResult(SnapshotCodec.readMap(data)));
+                                break;
+                            case HISTORY:
+                                history.put(id, new CallDictResult(SnapshotCodec.readMap(data)));
+                                break;
+                            case WATERMARK:
+                                watermark = Instant.ofEpochMilli(data.getLong());
+                                break;
+                            case DELETE:
+                                bugs.remove(id);
+                                comments.remove(id);
+                                history.remove(id);
+                                break;
+                            default:
+                                throw new IOException("Unknown record type " + type);
+                        }
+                    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                        throw new IOException("Corrupted record in " + logFile + " at " + validLength, e);
+                    }
+
+                    records++;
+                    validLength = buffer.position();
+                }
+            } finally {
+                // The mapping has to be released before the file is truncated
+                unmap(buffer);
+            }
+
+            if (validLength < size) {
+                log.warn("Ignoring {} bytes of incomplete records at the end of {}", size - validLength, logFile);
+            }
+        }
+
+        if (validLength < Files.size(logFile)) {
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+
+        bugs.keySet().forEach(id -> live.add(new Entry(BUG, id)));
+        comments.keySet().forEach(id -> live.add(new Entry(COMMENTS, id)));
+        history.keySet().forEach(id -> live.add(new Entry(HISTORY, id)));
+        if (watermark != null) {
+            live.add(new Entry(WATERMARK, ""));
+        }
+        log.info("Loaded {} bugs from {} records in {}", bugs.size(), records, logFile);
+        return new Snapshot(bugs, comments, history, watermark);
+    }
+
+    public synchronized void putBug(Bug bug) throws IOException {
+        String id = bug.get("id").toString();
+        append(BUG, id, bug);
+        live.add(new Entry(BUG, id));
+    }
+
+    public synchronized void putBugs(Iterable<Bug> bugs) throws IOException {
+        for (Bug bug: bugs) {
+            putBug(bug);
+        }
+    }
+
+    public synchronized void putComments(String id, CallDictResult comments) throws IOException {
+        append(COMMENTS, id, comments);
+        live.add(new Entry(COMMENTS, id));
+    }
+
+    public synchronized void putHistory(String id, CallDictResult history) throws IOException {
+        append(HISTORY, id, history);
+        live.add(new Entry(HISTORY, id));
+    }
+
+    public synchronized void removeBug(String id) throws IOException {
+        append(DELETE, id, null);
+        live.remove(new Entry(BUG, id));
+        live.remove(new Entry(COMMENTS, id));
+        live.remove(new Entry(HISTORY, id));
+    }
+
+    public synchronized void setWatermark(Instant watermark) throws IOException {
+        record.reset();
+        recordOut.writeByte(WATERMARK);
+        SnapshotCodec.writeString(recordOut, "");
+        recordOut.writeLong(watermark.toEpochMilli());
+        writeRecord();
+        live.add(new Entry(WATERMARK, ""));
+    }
+
+    /**
+     * Make the appended records durable (written and synced to the disk)
+     * and compact the log when it holds mostly overwritten records.
+     */
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+            channel.force(false);
+        }
+
+        // Every record not in the live set was overwritten or is a delete
+        long garbage = records - live.size();
+        if (records > MIN_RECORDS_TO_COMPACT && garbage > live.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log keeping only the newest record of every entry.
+     */
+    public synchronized void compact() throws IOException {
+        Snapshot snapshot = load();
+
+        Path tmp = directory.resolve(LOG_FILE + ".tmp");
+        openLog(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        records = 0;
+        try {
+            for (Bug bug: snapshot.getBugs().values()) {
+                putBug(bug);
+            }
+            for (Map.Entry<String, CallDictResult> comments: snapshot.getComments().entrySet()) {
+                putComments(comments.getKey(), comments.getValue());
+            }
+            for (Map.Entry<String, CallDictResult> history: snapshot.getHistory().entrySet()) {
+                putHistory(history.getKey(), history.getValue());
+            }
+            if (snapshot.getWatermark() != null) {
+                setWatermark(snapshot.getWatermark());
+            }
+            out.flush();
+            channel.force(false);
+        } finally {
+            closeLog();
+        }
+
+        Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Compacted {} to {} records", logFile, records);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeLog();
+    }
+
+    private void closeLog() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            channel = null;
+        }
+    }
+
+    private void openLog(Path file, OpenOption... options) throws IOException {
+        channel = FileChannel.open(file, options);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    /**
+     * Release the mapping without waiting for the garbage collector, a mapped
+     * file can not be truncated or replaced on some platforms. Nothing may
+     * read from the buffer afterwards.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            try {
+                // Java 9 and newer
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Could not unmap the snapshot log, leaving it to the garbage collector", e);
+        }
+    }
+
+    private void append(byte type, String id, Map<String, Object> value) throws IOException {
+        record.reset();
+        recordOut.writeByte(type);
+        SnapshotCodec.writeString(recordOut, id);
+        if (value != null) {
+            SnapshotCodec.writeMap(recordOut, value);
+        }
+        writeRecord();
+    }
+
+    private void writeRecord() throws IOException {
+        if (out == null) {
+            openLog(logFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        }
+
+        out.writeInt(record.size());
+        record.writeTo(out);
+        records++;
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Multimap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BugSynchronizer keeps a local snapshot of the bugs matching a search
+ * query up to date.
+ *
+ * The first sync downloads all matching bugs. Every following sync only asks
+ * for bugs whose last_change_time is newer than the watermark of the previous
+ * run, downloads the new ones and replays the history of the known ones
+ * using {@link Bug#applyHistoryChange(String, Object, Object)}, flag changes
+ * update the flags field of the bug. The changes are made through the Bug,
+ * a {@link BugIndex} holding the bugs re-indexes them on its own.
+ *
+ * Bugs that stop matching the query are not removed from the snapshot,
+ * the query only selects what is being watched for changes. New bugs that
+ * could not be downloaded are retried by the following syncs, up to
+ * {@link #MAX_FETCH_ATTEMPTS} times, the watermark does not wait for them.
+ */
+@Slf4j
+public class BugSynchronizer {
+    private static final String LAST_CHANGE_TIME = "last_change_time";
+    public static final int MAX_FETCH_ATTEMPTS = 3;
+
+    private final BugzillaClient client;
+    private final Multimap<String, Object> query;
+    private final Map<String, Bug> bugs;
+    private volatile Instant watermark;
+    // new bugs that failed to download and the number of attempts so far
+    private final Map<String, Integer> unfetched = new ConcurrentHashMap<>();
+
+    public BugSynchronizer(BugzillaClient client, Multimap<String, Object> query) {
+        this(client, query, Collections.emptyMap(), null);
+    }
+
+    /**
+     * Resume synchronization from a previously stored snapshot.
+     *
+     * @param snapshot bugs indexed by their id
+     * @param watermark last_change_time of the newest change in the snapshot
+     */
+    public BugSynchronizer(BugzillaClient client, Multimap<String, Object> query,
+                           Map<String, Bug> snapshot, Instant watermark) {
+        this.client = client;
+        this.query = LinkedListMultimap.create(query);
+        this.bugs = new ConcurrentHashMap<>(snapshot);
+        this.watermark = watermark;
+    }
+
+    public Map<String, Bug> getBugs() {
+        return Collections.unmodifiableMap(bugs);
+    }
+
+    public Instant getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return ids of new bugs that failed to download and will be retried
+     */
+    public Set<String> getUnfetched() {
+        return Collections.unmodifiableSet(unfetched.keySet());
+    }
+
+    /**
+     * Bring the snapshot up to date.
+     *
+     * @return ids of bugs that were added or changed
+     */
+    public synchronized Collection<String> sync() {
+        if (watermark == null) {
+            return fullSync();
+        }
+
+        Multimap<String, Object> params = LinkedListMultimap.create(query);
+        params.put(LAST_CHANGE_TIME, Date.from(watermark));
+        params.put("include_fields", "id");
+        params.put("include_fields", LAST_CHANGE_TIME);
+
+        List<String> changed = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+        Map<String, Date> changeTimes = new HashMap<>();
+        Instant newWatermark = watermark;
+
+        for (Bug bug: client.searchBugs(params)) {
+            BugProxy proxy = new BugProxy(bug);
+            String id = proxy.getId();
+            Date lastChange = proxy.getLastChangeTime();
+            changeTimes.put(id, lastChange);
+            newWatermark = max(newWatermark, lastChange.toInstant());
+
+            if (bugs.containsKey(id)) {
+                changed.add(id);
+            } else {
+                added.add(id);
+            }
+        }
+
+        Set<String> wanted = new LinkedHashSet<>(added);
+        wanted.addAll(unfetched.keySet());
+        List<String> fetched = new ArrayList<>(wanted.size());
+        BugzillaPartialResultException partial = null;
+        if (!wanted.isEmpty()) {
+            Iterable<Bug> newBugs;
+            try {
+                newBugs = client.getBugs(new ArrayList<>(wanted));
+            } catch (BugzillaPartialResultException e) {
+                newBugs = e.getBugs();
+                partial = e;
+            }
+
+            for (Bug bug: newBugs) {
+                String id = new BugProxy(bug).getId();
+                bugs.put(id, bug);
+                fetched.add(id);
+            }
+        }
+
+        // Retry the missing bugs later instead of holding the watermark,
+        // one bug that can never be downloaded must not pin it
+        wanted.removeAll(fetched);
+        unfetched.keySet().retainAll(wanted);
+        for (String id: wanted) {
+            int attempts = unfetched.merge(id, 1, Integer::sum);
+            if (attempts >= MAX_FETCH_ATTEMPTS) {
+                log.warn("Giving up on bug {} after {} failed downloads", id, attempts);
+                unfetched.remove(id);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            replayHistory(client.getHistory(changed, watermark), watermark);
+            for (String id: changed) {
+                bugs.get(id).put(LAST_CHANGE_TIME, changeTimes.get(id));
+            }
+        }
+
+        if (!wanted.isEmpty()) {
+            log.warn("Failed to download {} of {} new bugs, {} will be retried", wanted.size(), fetched.size() + wanted.size(), unfetched.size());
+        }
+        log.info("Synchronized {} new and {} changed bugs since {}", fetched.size(), changed.size(), watermark);
+        watermark = newWatermark;
+
+        if (partial != null) {
+            throw partial;
+        }
+
+        List<String> result = new ArrayList<>(fetched);
+        result.addAll(changed);
+        return result;
+    }
+
+    private Collection<String> fullSync() {
+        List<String> result = new ArrayList<>();
+        Instant newWatermark = Instant.EPOCH;
+
+        for (Bug bug: client.searchBugs(query)) {
+            BugProxy proxy = new BugProxy(bug);
+            bugs.put(proxy.getId(), bug);
+            result.add(proxy.getId());
+            newWatermark = max(newWatermark, proxy.getLastChangeTime().toInstant());
+        }
+
+        log.info("Downloaded {} bugs", result.size());
+        watermark = newWatermark;
+        return result;
+    }
+
+    /**
+     * Bugzilla only reports the second the change happened so changes
+     * made at the watermark itself are replayed as well. applyChange makes
+     * that harmless.
+     */
+    private void replayHistory(Iterable<CallDictResult> history, Instant since) {
+        for (CallDictResult bugHistory: history) {
+            Bug bug = bugs.get(bugHistory.get("id").toString());
+            if (bug == null) {
+                continue;
+            }
+
+            for (CallDictResult entry: bugHistory.getDictList("history")) {
+                Date when = entry.getAs("when", Date.class);
+                if (when != null && when.toInstant().isBefore(since)) {
+                    continue;
+                }
+
+                for (CallDictResult change: entry.getDictList("changes")) {
+                    bug.applyHistoryChange(
+                            change.getAs("field_name", String.class),
+                            change.get("removed"),
+                            change.get("added"));
+                }
+            }
+        }
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -11,6 +12,8 @@ import lombok.EqualsAndHashCode;
 @Data
 @EqualsAndHashCode(of = "flag")
 public class BugzillaBugFlag {
+    private static final Pattern FUTURE_FLAG = Pattern.compile(".*-future[?+]");
+
     private final String flag;
     private final LocalDateTime modifiedAt;
 
@@ -39,6 +42,6 @@ public class BugzillaBugFlag {
      * @return true if the flag is a future flag
      */
     public boolean futureFlag() {
-        return flag.matches(".*-future[?+]");
+        return FUTURE_FLAG.matcher(flag).matches();
     }
 }
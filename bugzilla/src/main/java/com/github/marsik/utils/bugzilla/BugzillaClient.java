@@ -1,23 +1,44 @@
 package com.github.marsik.utils.bugzilla;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.Date;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.client.XmlRpcClient;
 import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+import org.apache.xmlrpc.client.XmlRpcHttpTransportException;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
+import com.github.marsik.util.functional.ConsumerWithException;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -28,6 +49,22 @@ public class BugzillaClient {
     private String token;
 
     private int timeout = 30000;
+    private int chunkSize = 0;
+    private int parallelism = 4;
+    private ExecutorService chunkExecutor;
+    private Executor asyncExecutor;
+    private ExecutorService defaultAsyncExecutor;
+
+    private boolean pooledTransport = false;
+    private int maxConnectionsPerHost = 20;
+    private int maxConnections = 100;
+    private boolean gzip = false;
+
+    private RateLimiter rateLimiter;
+    private RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private CircuitBreaker circuitBreaker;
+
+    private BugzillaMetrics metrics = BugzillaMetrics.NOOP;
 
     public BugzillaClient(String baseUrl) throws MalformedURLException {
         xmlRpcUrl = new URL(baseUrl + "/xmlrpc.cgi");
@@ -37,16 +74,116 @@ public class BugzillaClient {
         this.timeout = millis;
     }
 
+    /**
+     * Split getBugs requests with more than chunkSize ids into multiple
+     * Bug.get calls that are sent in parallel. Zero disables chunking.
+     * When some of the chunks fail getBugs throws
+     * {@link BugzillaPartialResultException} with the bugs that were fetched.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Maximum number of chunked Bug.get calls in flight at the same time.
+     * Changes apply to the executor created after the next close().
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Executor used to run the *Async variants of the calls. When not set,
+     * a virtual thread per call executor is used where the runtime provides
+     * it and a cached thread pool otherwise.
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Keep the HTTP connections open (keep-alive) and reuse them for the next
+     * calls instead of opening a new connection for every call. The idle
+     * connections are kept by the JDK, see {@link KeepAliveTransportFactory}.
+     * Takes effect on the next open().
+     */
+    public void setPooledTransport(boolean pooledTransport) {
+        this.pooledTransport = pooledTransport;
+    }
+
+    /**
+     * Limits of the pooled transport, see setPooledTransport. All the calls
+     * go to a single host, the lower of the two limits caps the number
+     * of calls in flight.
+     */
+    public void setMaxConnections(int maxConnectionsPerHost, int maxConnections) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Compress the requests and ask the server to compress the responses.
+     * Regular calls use it after the next open(), streamed calls
+     * (streamComments, streamHistory) right away.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Limit the rate of calls made by this client (token bucket with one
+     * second of burst capacity). Zero or negative value disables the limit.
+     */
+    public void setRateLimit(double callsPerSecond) {
+        this.rateLimiter = callsPerSecond > 0 ? RateLimiter.create(callsPerSecond) : null;
+    }
+
+    /**
+     * Retry policy for transport failures and server overload responses
+     * (HTTP 429, 502, 503 and 504). Bugzilla faults are never retried.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Circuit breaker counting the failures that would be retried.
+     * Null disables it.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Metrics receiver for call latencies, sizes, bug counts, errors
+     * and retries. Calls made from now on report to it, except for the
+     * request and response sizes of regular calls which are measured by
+     * the transport and reported only after the next open().
+     */
+    public void setMetrics(BugzillaMetrics metrics) {
+        this.metrics = metrics == null ? BugzillaMetrics.NOOP : metrics;
+    }
+
     private XmlRpcClient getClient() {
         XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
         config.setServerURL(xmlRpcUrl);
         config.setContentLengthOptional(true);
         config.setEnabledForExtensions(true);
         config.setReplyTimeout(timeout);
+        config.setGzipCompressing(gzip);
+        config.setGzipRequesting(gzip);
 
         XmlRpcClient client = new XmlRpcClient();
         client.setConfig(config);
-        //client.setTransportFactory(new XmlRpcCommonsTransportFactory(client));
+        if (pooledTransport) {
+            client.setTransportFactory(new KeepAliveTransportFactory(client, metrics,
+                    Math.min(maxConnectionsPerHost, maxConnections)));
+        } else if (metrics != BugzillaMetrics.NOOP) {
+            client.setTransportFactory(MeteredTransportFactory.sun(client, metrics));
+        }
         return client;
     }
 
@@ -88,26 +225,103 @@ public class BugzillaClient {
             }
 
             Object[] callArgs = new Object[] {flatArgs};
-            log.info("Calling bugzilla method {} with args {}", method, callArgs);
+            log.debug("Calling bugzilla method {}", method);
+
+            metrics.callStarted(method);
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                CallDictResult result = execute(callArgs);
+                success = true;
+                return result;
+            } finally {
+                metrics.callFinished(method, System.nanoTime() - start, success);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private CallDictResult execute(Object[] callArgs) {
+            int attempt = 0;
+            while (true) {
+                if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+                    throw new BugzillaException(method, "Circuit breaker is open, call to " + xmlRpcUrl + " rejected.");
+                }
+
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+
+                // Every outcome has to reach the breaker, a half open breaker
+                // waits for the result of its trial call
+                boolean reported = false;
+                try {
+                    CallDictResult result = new CallDictResult((Map<String,Object>)client.execute(method, callArgs));
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onSuccess();
+                    }
+                    reported = true;
+                    return result;
+                } catch (XmlRpcException e) {
+                    boolean retryable = isRetryable(e);
+                    if (circuitBreaker != null) {
+                        if (retryable) {
+                            circuitBreaker.onFailure();
+                        } else {
+                            circuitBreaker.onSuccess();
+                        }
+                    }
+                    reported = true;
+
+                    if (!retryable || attempt >= retryPolicy.getMaxRetries()) {
+                        log.error("Bugzilla RPC call {} failed", method, e);
+                        throw new BugzillaException(method, e);
+                    }
+
+                    long delay = retryPolicy.delay(attempt++);
+                    metrics.callRetried(method);
+                    log.warn("Bugzilla RPC call {} failed, retry {} in {} ms: {}", method, attempt, delay, e.getMessage());
+                    sleep(method, delay);
+                } finally {
+                    if (!reported && circuitBreaker != null) {
+                        circuitBreaker.onFailure();
+                    }
+                }
+            }
+        }
+
+        private void sleep(String method, long millis) {
             try {
-                return new CallDictResult((Map<String,Object>)client.execute(method, callArgs));
-            } catch (XmlRpcException e) {
-                log.error("Bugzilla RPC call failed: {}", e);
-                return new CallDictResult(Collections.emptyMap());
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BugzillaException(method, e);
             }
         }
     }
 
+    private static boolean isRetryable(XmlRpcException e) {
+        if (e instanceof XmlRpcHttpTransportException) {
+            int status = ((XmlRpcHttpTransportException) e).getStatusCode();
+            return status == 429 || status == 502 || status == 503 || status == 504;
+        }
+        return e.getCause() instanceof IOException;
+    }
+
     @SuppressWarnings("unchecked")
     public boolean open() {
         client = getClient();
 
         if (authorizationCallback != null) {
-            CallDictResult ret = new Call("User.login")
-                    .argument("login", authorizationCallback.getName())
-                    .argument("password", authorizationCallback.getPassword())
-                    .call();
-            token = ret.getAs("token", String.class);
+            try {
+                CallDictResult ret = new Call("User.login")
+                        .argument("login", authorizationCallback.getName())
+                        .argument("password", authorizationCallback.getPassword())
+                        .call();
+                token = ret.getAs("token", String.class);
+            } catch (BugzillaException e) {
+                log.error("Could not log into {}", xmlRpcUrl, e);
+                return false;
+            }
         }
 
         return true;
@@ -116,6 +330,29 @@ public class BugzillaClient {
     public void close() {
         token = null;
         client = null;
+
+        synchronized (this) {
+            if (chunkExecutor != null) {
+                chunkExecutor.shutdown();
+                chunkExecutor = null;
+            }
+
+            if (defaultAsyncExecutor != null) {
+                defaultAsyncExecutor.shutdown();
+                defaultAsyncExecutor = null;
+            }
+        }
+    }
+
+    private synchronized ExecutorService getChunkExecutor() {
+        if (chunkExecutor == null) {
+            // Daemon threads, a client that is never closed must not keep the JVM running
+            chunkExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("bugzilla-chunk-%d")
+                    .build());
+        }
+        return chunkExecutor;
     }
 
     public boolean isLoggedIn() {
@@ -123,6 +360,17 @@ public class BugzillaClient {
                 && token != null;
     }
 
+    private synchronized Executor getAsyncExecutor() {
+        if (asyncExecutor != null) {
+            return asyncExecutor;
+        }
+
+        if (defaultAsyncExecutor == null) {
+            defaultAsyncExecutor = AsyncExecutors.newPerTaskExecutor();
+        }
+        return defaultAsyncExecutor;
+    }
+
     public String getBugzillaVersion() {
         checkLoggedIn();
         return new Call("Bugzilla.version").call().getAs("version", String.class);
@@ -135,9 +383,38 @@ public class BugzillaClient {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public Iterable<Bug> searchBugs(Multimap<String, Object> params) {
         checkLoggedIn();
+        return fetchSearch(params);
+    }
+
+    /**
+     * Lazily page through the results of Bug.search using the limit and offset
+     * search parameters. The next page is requested only when the consumer
+     * reaches the end of the current one, so only a single page is kept
+     * in memory.
+     *
+     * The params should specify a stable order of the results, otherwise
+     * the pages might overlap when the bugs change during the iteration.
+     *
+     * @param params search parameters, must not contain limit or offset
+     * @param pageSize maximum number of bugs requested in a single call
+     * @return lazily evaluated stream of the matching bugs
+     */
+    public Stream<Bug> searchBugs(Multimap<String, Object> params, int pageSize) {
+        checkLoggedIn();
+        Iterator<Bug> pages = new PagedIterator<>(offset -> {
+            Multimap<String, Object> page = LinkedListMultimap.create(params);
+            page.put("limit", pageSize);
+            page.put("offset", offset);
+            return fetchSearch(page);
+        });
+
+        return stream(pages);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Bug> fetchSearch(Multimap<String, Object> params) {
         CallDictResult ret = new Call("Bug.search")
                 .arguments(params)
                 .call();
@@ -148,12 +425,24 @@ public class BugzillaClient {
                 .map(Bug::new)
                 .collect(Collectors.toList());
 
+        metrics.bugsReturned("Bug.search", bugs.size());
         return bugs;
     }
 
-    @SuppressWarnings("unchecked")
+    private static <T> Stream<T> stream(Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     public Iterable<Bug> getBugs(Collection<String> ids, Multimap<String, Object> params) {
         checkLoggedIn();
+        if (chunkSize > 0 && ids.size() > chunkSize) {
+            return getBugsChunked(ids, params);
+        }
+        return fetchBugs(ids, params);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Bug> fetchBugs(Collection<String> ids, Multimap<String, Object> params) {
         CallDictResult ret = new Call("Bug.get")
                 .argument("ids", new ArrayList<>(ids))
                 .argument("permissive", true)
@@ -166,6 +455,61 @@ public class BugzillaClient {
                 .map(Bug::new)
                 .collect(Collectors.toList());
 
+        metrics.bugsReturned("Bug.get", bugs.size());
+        return bugs;
+    }
+
+    /**
+     * Fetch the bugs using chunks of at most chunkSize ids. The chunks are
+     * processed in parallel and merged as they arrive. When some of the chunks
+     * fail the remaining chunks are still fetched and a
+     * {@link BugzillaPartialResultException} is thrown at the end.
+     */
+    private Collection<Bug> getBugsChunked(Collection<String> ids, Multimap<String, Object> params) {
+        CompletionService<Collection<Bug>> completion = new ExecutorCompletionService<>(getChunkExecutor());
+
+        Map<Future<Collection<Bug>>, List<String>> chunks = new HashMap<>();
+        for (List<String> chunk: Iterables.partition(ids, chunkSize)) {
+            chunks.put(completion.submit(() -> fetchBugs(chunk, params)), chunk);
+        }
+
+        List<Bug> bugs = new ArrayList<>(ids.size());
+        List<String> failedIds = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        while (!chunks.isEmpty()) {
+            Future<Collection<Bug>> future;
+            try {
+                future = completion.take();
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while fetching bugs, {} chunks were not fetched", chunks.size());
+                Thread.currentThread().interrupt();
+                chunks.keySet().forEach(f -> f.cancel(true));
+                chunks.values().forEach(failedIds::addAll);
+                failures.add(e);
+                break;
+            }
+
+            List<String> chunk = chunks.remove(future);
+            try {
+                bugs.addAll(future.get());
+            } catch (ExecutionException e) {
+                log.error("Fetching a chunk of bugs from {} failed", xmlRpcUrl, e.getCause());
+                failedIds.addAll(chunk);
+                failures.add(e.getCause());
+            } catch (InterruptedException e) {
+                // the future is already done, get() does not block
+                Thread.currentThread().interrupt();
+                failedIds.addAll(chunk);
+                failures.add(e);
+            }
+        }
+
+        if (!failedIds.isEmpty()) {
+            BugzillaPartialResultException e = new BugzillaPartialResultException("Bug.get", bugs, failedIds);
+            failures.forEach(e::addSuppressed);
+            throw e;
+        }
+
         return bugs;
     }
 
@@ -173,9 +517,33 @@ public class BugzillaClient {
         return getBugs(ids, ArrayListMultimap.create(0, 0));
     }
 
-        @SuppressWarnings("unchecked")
+    /**
+     * Lazily fetch the bugs using one Bug.get call per pageSize ids. The next
+     * call is made only when the consumer reaches the end of the current page.
+     */
+    public Stream<Bug> getBugs(Collection<String> ids, Multimap<String, Object> params, int pageSize) {
+        checkLoggedIn();
+        return stream(Iterables.partition(ids, pageSize).iterator())
+                .flatMap(page -> fetchBugs(page, params).stream());
+    }
+
     public Iterable<Bug> getExtra(Collection<String> ids) {
         checkLoggedIn();
+        return fetchExtra(ids);
+    }
+
+    /**
+     * Lazily fetch the flags and external bugs using one Bug.get call per
+     * pageSize ids.
+     */
+    public Stream<Bug> getExtra(Collection<String> ids, int pageSize) {
+        checkLoggedIn();
+        return stream(Iterables.partition(ids, pageSize).iterator())
+                .flatMap(page -> fetchExtra(page).stream());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Bug> fetchExtra(Collection<String> ids) {
         CallDictResult ret = new Call("Bug.get")
                 .argument("ids", new ArrayList<>(ids))
                 .argument("permissive", true)
@@ -191,6 +559,7 @@ public class BugzillaClient {
                 .map(Bug::new)
                 .collect(Collectors.toList());
 
+        metrics.bugsReturned("Bug.get", bugs.size());
         return bugs;
     }
 
@@ -210,14 +579,213 @@ public class BugzillaClient {
         return ret.getDict("bugs");
     }
 
-    @SuppressWarnings("unchecked")
     public Iterable<CallDictResult> getHistory(Collection<String> bzIds) {
+        return getHistory(bzIds, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Iterable<CallDictResult> getHistory(Collection<String> bzIds, Instant since) {
         checkLoggedIn();
-        CallDictResult ret = new Call("Bug.history")
+        Call call = new Call("Bug.history")
                 .argument("ids", new ArrayList<>(bzIds))
-                .argument("permissive", true)
-                .call();
+                .argument("permissive", true);
+
+        if (since != null) {
+            call = call.argument("new_since", Date.from(since));
+        }
+
+        CallDictResult ret = call.call();
 
         return ret.getDictList("bugs");
     }
+
+    /**
+     * Stream the comments of the given bugs to the consumer as they are parsed
+     * from the response, without decoding the whole response first. Each
+     * comment carries its bug_id. An exception thrown by the consumer stops
+     * the call and is rethrown unchanged.
+     *
+     * The call goes through the rate limiter and the circuit breaker but,
+     * unlike the regular calls, is never retried. The consumer may have
+     * received part of the comments when the call fails.
+     */
+    public void streamComments(Collection<String> bzIds, Instant since, ConsumerWithException<CallDictResult> consumer)
+            throws Exception {
+        checkLoggedIn();
+        Map<String, Object> args = new HashMap<>();
+        args.put("ids", new ArrayList<>(bzIds));
+        args.put("permissive", true);
+        if (since != null) {
+            args.put("new_since", Date.from(since));
+        }
+
+        streamCall("Bug.comments", args, call -> {
+            call.enterStruct();
+            while (call.nextMember()) {
+                call.readMemberName();
+                call.enterStruct();
+                while (call.nextMember()) {
+                    if ("comments".equals(call.readMemberName())) {
+                        while (call.nextArrayItem()) {
+                            call.deliver(consumer, new CallDictResult(StreamingXmlRpcCall.asMap(call.readValue())));
+                        }
+                    } else {
+                        call.readValue();
+                    }
+                    call.endMember();
+                }
+                call.leaveStruct();
+                call.endMember();
+            }
+            call.leaveStruct();
+        });
+    }
+
+    /**
+     * Stream the history entries of the given bugs to the consumer as they
+     * are parsed from the response. The bug id is added to every entry
+     * as bug_id. An exception thrown by the consumer stops the call and
+     * is rethrown unchanged.
+     *
+     * The call goes through the rate limiter and the circuit breaker but,
+     * unlike the regular calls, is never retried. The consumer may have
+     * received part of the entries when the call fails.
+     */
+    public void streamHistory(Collection<String> bzIds, Instant since, ConsumerWithException<CallDictResult> consumer)
+            throws Exception {
+        checkLoggedIn();
+        Map<String, Object> args = new HashMap<>();
+        args.put("ids", new ArrayList<>(bzIds));
+        args.put("permissive", true);
+        if (since != null) {
+            args.put("new_since", Date.from(since));
+        }
+
+        streamCall("Bug.history", args, call -> {
+            while (call.nextArrayItem()) {
+                call.enterStruct();
+
+                // The id member can follow the history, entries seen before it are kept until then
+                Object id = null;
+                List<CallDictResult> waiting = new ArrayList<>();
+                while (call.nextMember()) {
+                    String name = call.readMemberName();
+                    if ("history".equals(name)) {
+                        while (call.nextArrayItem()) {
+                            CallDictResult entry = new CallDictResult(StreamingXmlRpcCall.asMap(call.readValue()));
+                            if (id == null) {
+                                waiting.add(entry);
+                            } else {
+                                entry.put("bug_id", id);
+                                call.deliver(consumer, entry);
+                            }
+                        }
+                    } else if ("id".equals(name)) {
+                        id = call.readValue();
+                        for (CallDictResult entry: waiting) {
+                            entry.put("bug_id", id);
+                            call.deliver(consumer, entry);
+                        }
+                        waiting.clear();
+                    } else {
+                        call.readValue();
+                    }
+                    call.endMember();
+                }
+
+                call.leaveStruct();
+            }
+        });
+    }
+
+    private void streamCall(String method, Map<String, Object> args, StreamingXmlRpcCall.BugsHandler handler)
+            throws Exception {
+        if (token != null) {
+            args.put("Bugzilla_token", token);
+        }
+
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            throw new BugzillaException(method, "Circuit breaker is open, call to " + xmlRpcUrl + " rejected.");
+        }
+
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+
+        log.debug("Streaming bugzilla method {}", method);
+        metrics.callStarted(method);
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean healthy = false;
+        try {
+            new StreamingXmlRpcCall(method, metrics).execute(xmlRpcUrl, timeout, gzip, args, handler);
+            success = true;
+            healthy = true;
+        } catch (StreamingXmlRpcCall.ConsumerException e) {
+            // The server answered, the consumer failed
+            healthy = true;
+            throw e.getCause();
+        } catch (BugzillaException e) {
+            healthy = !isTransportFailure(e.getCause());
+            throw e;
+        } finally {
+            metrics.callFinished(method, System.nanoTime() - start, success);
+            if (circuitBreaker != null) {
+                if (healthy) {
+                    circuitBreaker.onSuccess();
+                } else {
+                    circuitBreaker.onFailure();
+                }
+            }
+        }
+    }
+
+    /**
+     * Failures of a streamed call that count against the circuit breaker,
+     * the same ones the regular calls retry. Faults returned by Bugzilla
+     * do not count.
+     */
+    private static boolean isTransportFailure(Throwable cause) {
+        if (cause instanceof XmlRpcException) {
+            return isRetryable((XmlRpcException) cause);
+        }
+        if (cause instanceof XMLStreamException) {
+            cause = ((XMLStreamException) cause).getNestedException();
+        }
+        return cause instanceof IOException;
+    }
+
+    public CompletableFuture<String> getBugzillaVersionAsync() {
+        checkLoggedIn();
+        return CompletableFuture.supplyAsync(this::getBugzillaVersion, getAsyncExecutor());
+    }
+
+    public CompletableFuture<Iterable<Bug>> searchBugsAsync(Multimap<String, Object> params) {
+        checkLoggedIn();
+        return CompletableFuture.supplyAsync(() -> searchBugs(params), getAsyncExecutor());
+    }
+
+    public CompletableFuture<Iterable<Bug>> getBugsAsync(Collection<String> ids, Multimap<String, Object> params) {
+        checkLoggedIn();
+        return CompletableFuture.supplyAsync(() -> getBugs(ids, params), getAsyncExecutor());
+    }
+
+    public CompletableFuture<Iterable<Bug>> getBugsAsync(Collection<String> ids) {
+        return getBugsAsync(ids, ArrayListMultimap.create(0, 0));
+    }
+
+    public CompletableFuture<Iterable<Bug>> getExtraAsync(Collection<String> ids) {
+        checkLoggedIn();
+        return CompletableFuture.supplyAsync(() -> getExtra(ids), getAsyncExecutor());
+    }
+
+    public CompletableFuture<CallDictResult> getCommentsAsync(Collection<String> bzIds, Instant since) {
+        checkLoggedIn();
+        return CompletableFuture.supplyAsync(() -> getComments(bzIds, since), getAsyncExecutor());
+    }
+
+    public CompletableFuture<Iterable<CallDictResult>> getHistoryAsync(Collection<String> bzIds) {
+        checkLoggedIn();
+        return CompletableFuture.supplyAsync(() -> getHistory(bzIds), getAsyncExecutor());
+    }
 }
@@ -0,0 +1,22 @@
+package com.github.marsik.utils.bugzilla;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a Bugzilla call fails after all retries were exhausted,
+ * when Bugzilla returns a fault or when the circuit breaker rejects the call.
+ */
+@Getter
+public class BugzillaException extends RuntimeException {
+    private final String method;
+
+    public BugzillaException(String method, String message) {
+        super(message);
+        this.method = method;
+    }
+
+    public BugzillaException(String method, Throwable cause) {
+        super("Bugzilla call " + method + " failed: " + cause.getMessage(), cause);
+        this.method = method;
+    }
+}
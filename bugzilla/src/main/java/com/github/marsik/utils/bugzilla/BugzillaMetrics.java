@@ -0,0 +1,34 @@
+package com.github.marsik.utils.bugzilla;
+
+/**
+ * Receives measurements of the calls made by {@link BugzillaClient}.
+ *
+ * All methods have empty default implementations. {@link #NOOP} is used
+ * when no metrics are configured and the client then skips the byte
+ * counting transport completely.
+ */
+public interface BugzillaMetrics {
+    BugzillaMetrics NOOP = new BugzillaMetrics() {};
+
+    default void callStarted(String method) {
+    }
+
+    /**
+     * @param nanos duration of the call including retries
+     * @param success false when the call ended with an exception
+     */
+    default void callFinished(String method, long nanos, boolean success) {
+    }
+
+    default void callRetried(String method) {
+    }
+
+    default void bytesSent(String method, long bytes) {
+    }
+
+    default void bytesReceived(String method, long bytes) {
+    }
+
+    default void bugsReturned(String method, int count) {
+    }
+}
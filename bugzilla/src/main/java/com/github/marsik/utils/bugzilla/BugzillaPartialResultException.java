@@ -0,0 +1,26 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import lombok.Getter;
+
+/**
+ * Thrown when only a part of a chunked request could be fetched.
+ *
+ * The bugs that were fetched are kept together with the ids of the failed
+ * chunks, the failures of the individual chunks are attached as suppressed
+ * exceptions.
+ */
+@Getter
+public class BugzillaPartialResultException extends BugzillaException {
+    private final Collection<Bug> bugs;
+    private final Collection<String> failedIds;
+
+    public BugzillaPartialResultException(String method, Collection<Bug> bugs, Collection<String> failedIds) {
+        super(method, "Bugzilla call " + method + " failed for " + failedIds.size() + " ids, "
+                + bugs.size() + " bugs were fetched");
+        this.bugs = Collections.unmodifiableCollection(bugs);
+        this.failedIds = Collections.unmodifiableCollection(failedIds);
+    }
+}
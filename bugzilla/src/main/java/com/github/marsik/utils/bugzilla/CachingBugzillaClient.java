@@ -0,0 +1,218 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multimap;
+import lombok.Value;
+
+/**
+ * Read-through cache in front of {@link BugzillaClient#getBugs} and
+ * {@link BugzillaClient#getExtra}.
+ *
+ * Entries are keyed by the bug id and the set of requested include_fields.
+ * They expire after the configured time and the least recently used entries
+ * are evicted once the maximum size is reached. Ids that Bugzilla did not
+ * return are cached as missing too, ids from failed chunks of a
+ * {@link BugzillaPartialResultException} are not cached and the exception
+ * is rethrown with all the bugs that could be found.
+ *
+ * Concurrent misses for the same key are coalesced, only one of the callers
+ * fetches the bug and the others wait for the result.
+ *
+ * The returned Bug instances are shared by all callers and must not be
+ * modified.
+ */
+public class CachingBugzillaClient {
+    private static final Set<String> EXTRA_FIELDS = ImmutableSet.of("id", "flags", "external_bugs");
+
+    private final BugzillaClient client;
+    private final Cache<Key, Optional<Bug>> cache;
+    private final Map<Key, CompletableFuture<Optional<Bug>>> loading = new ConcurrentHashMap<>();
+
+    @Value
+    private static class Key {
+        String id;
+        Set<String> fields;
+    }
+
+    public CachingBugzillaClient(BugzillaClient client, long ttl, TimeUnit unit, long maxEntries) {
+        this.client = client;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+    }
+
+    public BugzillaClient getClient() {
+        return client;
+    }
+
+    public Iterable<Bug> getBugs(Collection<String> ids) {
+        return getBugs(ids, ArrayListMultimap.create(0, 0));
+    }
+
+    /**
+     * Only params consisting of include_fields are cached, any other
+     * parameter makes the call bypass the cache.
+     */
+    public Iterable<Bug> getBugs(Collection<String> ids, Multimap<String, Object> params) {
+        if (!params.keySet().stream().allMatch("include_fields"::equals)) {
+            return client.getBugs(ids, params);
+        }
+
+        Set<String> fields = new TreeSet<>();
+        params.get("include_fields").forEach(f -> fields.add(f.toString()));
+        return get(ids, Collections.unmodifiableSet(fields), missing -> client.getBugs(missing, params));
+    }
+
+    public Iterable<Bug> getExtra(Collection<String> ids) {
+        return get(ids, EXTRA_FIELDS, client::getExtra);
+    }
+
+    public void invalidate(Collection<String> ids) {
+        Set<String> invalid = new HashSet<>(ids);
+        cache.asMap().keySet().removeIf(key -> invalid.contains(key.getId()));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Hit, miss and eviction counters. Coalesced waits for a bug that
+     * is being loaded by another caller count as misses.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private interface Loader {
+        Iterable<Bug> load(Collection<String> ids);
+    }
+
+    private Iterable<Bug> get(Collection<String> ids, Set<String> fields, Loader loader) {
+        Map<Key, Optional<Bug>> found = new LinkedHashMap<>();
+        Map<Key, CompletableFuture<Optional<Bug>>> waiting = new HashMap<>();
+        Map<Key, CompletableFuture<Optional<Bug>>> owned = new HashMap<>();
+
+        for (String id: ids) {
+            Key key = new Key(id, fields);
+            Optional<Bug> cached = cache.getIfPresent(key);
+            if (cached != null) {
+                found.put(key, cached);
+                continue;
+            }
+
+            CompletableFuture<Optional<Bug>> future = new CompletableFuture<>();
+            CompletableFuture<Optional<Bug>> existing = loading.putIfAbsent(key, future);
+            if (existing == null) {
+                owned.put(key, future);
+            } else {
+                waiting.put(key, existing);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            load(owned, loader);
+        }
+
+        List<Bug> bugs = new ArrayList<>(ids.size());
+        List<String> failedIds = new ArrayList<>();
+        Set<Throwable> failures = new LinkedHashSet<>();
+        for (String id: ids) {
+            Key key = new Key(id, fields);
+            Optional<Bug> bug = found.get(key);
+            if (bug == null) {
+                CompletableFuture<Optional<Bug>> future = owned.containsKey(key) ? owned.get(key) : waiting.get(key);
+                try {
+                    bug = future.join();
+                } catch (CompletionException e) {
+                    failedIds.add(id);
+                    failures.add(e.getCause());
+                    continue;
+                }
+            }
+            bug.ifPresent(bugs::add);
+        }
+
+        if (!failedIds.isEmpty()) {
+            Throwable first = failures.iterator().next();
+            String method = first instanceof BugzillaException ? ((BugzillaException) first).getMethod() : "Bug.get";
+            BugzillaPartialResultException e = new BugzillaPartialResultException(method, bugs, failedIds);
+            failures.forEach(e::addSuppressed);
+            throw e;
+        }
+        return bugs;
+    }
+
+    private void load(Map<Key, CompletableFuture<Optional<Bug>>> owned, Loader loader) {
+        Map<String, Key> keys = new HashMap<>();
+        owned.keySet().forEach(key -> keys.put(key.getId(), key));
+
+        Iterable<Bug> fetched;
+        BugzillaPartialResultException partial = null;
+        try {
+            fetched = loader.load(keys.keySet());
+        } catch (BugzillaPartialResultException e) {
+            fetched = e.getBugs();
+            partial = e;
+        } catch (RuntimeException e) {
+            for (Map.Entry<Key, CompletableFuture<Optional<Bug>>> entry: owned.entrySet()) {
+                loading.remove(entry.getKey());
+                entry.getValue().completeExceptionally(e);
+            }
+            throw e;
+        }
+
+        Map<Key, Optional<Bug>> loaded = new HashMap<>();
+        for (Bug bug: fetched) {
+            Key key = keys.get(bug.get("id").toString());
+            if (key != null) {
+                loaded.put(key, Optional.of(bug));
+            }
+        }
+
+        // Only ids that were really requested and not returned are cached as missing
+        Set<String> failed = partial == null ? Collections.emptySet() : new HashSet<>(partial.getFailedIds());
+        for (Map.Entry<Key, CompletableFuture<Optional<Bug>>> entry: owned.entrySet()) {
+            Optional<Bug> bug = loaded.get(entry.getKey());
+            if (bug == null && failed.contains(entry.getKey().getId())) {
+                loading.remove(entry.getKey());
+                entry.getValue().completeExceptionally(partial);
+                continue;
+            }
+
+            if (bug == null) {
+                bug = Optional.empty();
+            }
+            cache.put(entry.getKey(), bug);
+            loading.remove(entry.getKey());
+            entry.getValue().complete(bug);
+        }
+    }
+}
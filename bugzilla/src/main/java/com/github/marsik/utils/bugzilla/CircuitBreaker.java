@@ -0,0 +1,68 @@
+package com.github.marsik.utils.bugzilla;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker protecting the Bugzilla server.
+ *
+ * After failureThreshold consecutive failures the breaker opens and rejects
+ * all calls for openMillis. Then a single trial call is let through,
+ * the breaker closes when it succeeds and opens again when it fails.
+ */
+@Slf4j
+public class CircuitBreaker {
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openedAt = 0;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= openMillis) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // A trial call is already running
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Circuit breaker closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Circuit breaker opened after {} failures", failures);
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+}
@@ -0,0 +1,314 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Compact immutable representation of a bug meant for keeping large bug
+ * sets in memory.
+ *
+ * Low cardinality strings (status, severity, product, keywords, ...) are
+ * interned and shared between all bugs, ids and dependency lists are stored
+ * as primitive int arrays. Fields without a typed accessor are kept in a
+ * map available through {@link #getCustomFields()}.
+ */
+public final class CompactBug {
+    static final Pattern SPACES = Pattern.compile(" +");
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+    private static final String[] NO_STRINGS = new String[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final int id;
+    private final String summary;
+    private final String status;
+    private final String resolution;
+    private final String severity;
+    private final String priority;
+    private final String product;
+    private final String classification;
+    private final String assignedTo;
+    private final String whiteboard;
+    private final String[] component;
+    private final String[] targetRelease;
+    private final String[] targetMilestone;
+    private final String[] keywords;
+    private final int[] blocks;
+    private final int[] dependsOn;
+    private final long creationTime;
+    private final long lastChangeTime;
+    private final Map<String, Object> custom;
+
+    private CompactBug(Map<String, Object> bug) {
+        Map<String, Object> fields = new HashMap<>(bug);
+
+        id = Integer.parseInt(fields.remove("id").toString());
+        summary = (String) fields.remove("summary");
+        status = intern(fields.remove("status"));
+        resolution = intern(fields.remove("resolution"));
+        severity = intern(fields.remove("severity"));
+        priority = intern(fields.remove("priority"));
+        product = intern(fields.remove("product"));
+        classification = intern(fields.remove("classification"));
+        assignedTo = intern(fields.remove("assigned_to"));
+        whiteboard = (String) fields.remove("whiteboard");
+        component = toStringArray(fields.remove("component"), false);
+        targetRelease = toStringArray(fields.remove("target_release"), false);
+        targetMilestone = toStringArray(fields.remove("target_milestone"), false);
+        keywords = toStringArray(fields.remove("keywords"), true);
+        blocks = toIntArray(fields.remove("blocks"));
+        dependsOn = toIntArray(fields.remove("depends_on"));
+        creationTime = toTime(fields.remove("creation_time"));
+        lastChangeTime = toTime(fields.remove("last_change_time"));
+        custom = fields.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(fields);
+    }
+
+    public static CompactBug of(Map<String, Object> bug) {
+        return new CompactBug(bug);
+    }
+
+    public static List<CompactBug> of(Iterable<Bug> bugs) {
+        List<CompactBug> compact = bugs instanceof Collection
+                ? new ArrayList<>(((Collection<Bug>) bugs).size())
+                : new ArrayList<>();
+        for (Bug bug: bugs) {
+            compact.add(new CompactBug(bug));
+        }
+        return compact;
+    }
+
+    /**
+     * Reconstruct the full Bug map. Multi-valued fields are returned
+     * as arrays, the same way XML-RPC returns them.
+     */
+    public Bug toBug() {
+        Bug bug = new Bug(custom.size() + 20);
+        bug.putAll(custom);
+        bug.put("id", id);
+        putIfSet(bug, "summary", summary);
+        putIfSet(bug, "status", status);
+        putIfSet(bug, "resolution", resolution);
+        putIfSet(bug, "severity", severity);
+        putIfSet(bug, "priority", priority);
+        putIfSet(bug, "product", product);
+        putIfSet(bug, "classification", classification);
+        putIfSet(bug, "assigned_to", assignedTo);
+        putIfSet(bug, "whiteboard", whiteboard);
+        bug.put("component", component.clone());
+        bug.put("target_release", targetRelease.clone());
+        bug.put("target_milestone", targetMilestone.clone());
+        bug.put("keywords", keywords.clone());
+        bug.put("blocks", Arrays.stream(blocks).boxed().toArray());
+        bug.put("depends_on", Arrays.stream(dependsOn).boxed().toArray());
+        if (creationTime != NO_TIME) {
+            bug.put("creation_time", new Date(creationTime));
+        }
+        if (lastChangeTime != NO_TIME) {
+            bug.put("last_change_time", new Date(lastChangeTime));
+        }
+        return bug;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getResolution() {
+        return resolution;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public String getProduct() {
+        return product;
+    }
+
+    public String getClassification() {
+        return classification;
+    }
+
+    public String getAssignedTo() {
+        return assignedTo;
+    }
+
+    public String getWhiteBoard() {
+        return whiteboard;
+    }
+
+    public List<String> getComponents() {
+        return Collections.unmodifiableList(Arrays.asList(component));
+    }
+
+    /**
+     * @return the first target release or an empty string when it is not set ("---")
+     */
+    public String getTargetRelease() {
+        return firstValue(targetRelease);
+    }
+
+    public String getTargetMilestone() {
+        return firstValue(targetMilestone);
+    }
+
+    public List<String> getKeywords() {
+        return Collections.unmodifiableList(Arrays.asList(keywords));
+    }
+
+    public boolean hasKeyword(String keyword) {
+        for (String k: keywords) {
+            if (k.equals(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int[] getBlocks() {
+        return blocks.clone();
+    }
+
+    public int[] getDependsOn() {
+        return dependsOn.clone();
+    }
+
+    int[] blocks() {
+        return blocks;
+    }
+
+    int[] dependsOn() {
+        return dependsOn;
+    }
+
+    public Date getCreationTime() {
+        return creationTime == NO_TIME ? null : new Date(creationTime);
+    }
+
+    public Date getLastChangeTime() {
+        return lastChangeTime == NO_TIME ? null : new Date(lastChangeTime);
+    }
+
+    public Object getCustom(String key) {
+        return custom.get(key);
+    }
+
+    /**
+     * @return a copy of the fields that do not have a typed accessor
+     */
+    public CallDictResult getCustomFields() {
+        return new CallDictResult(custom);
+    }
+
+    private static void putIfSet(Bug bug, String key, Object value) {
+        if (value != null) {
+            bug.put(key, value);
+        }
+    }
+
+    private static String firstValue(String[] values) {
+        if (values.length == 0 || values[0].trim().equals("---")) {
+            return "";
+        }
+        return values[0];
+    }
+
+    private static String intern(Object value) {
+        return value == null ? null : INTERNER.intern(value.toString());
+    }
+
+    private static String[] toStringArray(Object value, boolean splitSpaces) {
+        List<String> values = splitValues(value, splitSpaces);
+        if (values.isEmpty()) {
+            return NO_STRINGS;
+        }
+
+        String[] result = new String[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = INTERNER.intern(values.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Convert an XML-RPC value holding bug ids (single value, array, collection
+     * or space separated string) to an int array.
+     */
+    static int[] toIntArray(Object value) {
+        List<String> values = splitValues(value, true);
+        if (values.isEmpty()) {
+            return NO_INTS;
+        }
+
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Integer.parseInt(values.get(i));
+        }
+        return result;
+    }
+
+    private static List<String> splitValues(Object value, boolean splitSpaces) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+
+        Collection<?> items;
+        if (value instanceof Object[]) {
+            items = Arrays.asList((Object[]) value);
+        } else if (value instanceof Collection) {
+            items = (Collection<?>) value;
+        } else {
+            items = Collections.singletonList(value);
+        }
+
+        List<String> values = new ArrayList<>(items.size());
+        for (Object item: items) {
+            String text = item.toString().trim();
+            if (!splitSpaces) {
+                values.add(text);
+                continue;
+            }
+
+            for (String part: SPACES.split(text)) {
+                if (!part.isEmpty()) {
+                    values.add(part);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static long toTime(Object value) {
+        if (value == null) {
+            return NO_TIME;
+        } else if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return Instant.from(DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(value.toString())).toEpochMilli();
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple in-memory {@link BugzillaMetrics} implementation keeping
+ * counters and a latency histogram per method. Meant for tests
+ * and quick diagnostics.
+ */
+public class InMemoryBugzillaMetrics implements BugzillaMetrics {
+    /**
+     * Upper bounds (in milliseconds) of the latency histogram buckets,
+     * the last bucket holds everything slower.
+     */
+    private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    private final Map<String, MethodStats> stats = new ConcurrentHashMap<>();
+
+    public static class MethodStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder bugs = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLongArray latency = new AtomicLongArray(BUCKETS.length + 1);
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public long getBugs() {
+            return bugs.sum();
+        }
+
+        public long getInFlight() {
+            return inFlight.get();
+        }
+
+        public double getMeanMillis() {
+            long count = calls.sum();
+            return count == 0 ? 0 : totalNanos.sum() / 1e6 / count;
+        }
+
+        /**
+         * @param percentile value between 0 and 100
+         * @return upper bound of the histogram bucket containing the percentile
+         * in milliseconds, Long.MAX_VALUE for the overflow bucket
+         */
+        public long getLatencyPercentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < latency.length(); i++) {
+                total += latency.get(i);
+            }
+
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                seen += latency.get(i);
+                if (seen >= rank) {
+                    return BUCKETS[i];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private void record(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+                bucket++;
+            }
+            latency.incrementAndGet(bucket);
+            totalNanos.add(nanos);
+        }
+    }
+
+    public MethodStats getStats(String method) {
+        return stats.computeIfAbsent(method, m -> new MethodStats());
+    }
+
+    public Map<String, MethodStats> getAllStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    @Override
+    public void callStarted(String method) {
+        getStats(method).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void callFinished(String method, long nanos, boolean success) {
+        MethodStats methodStats = getStats(method);
+        methodStats.inFlight.decrementAndGet();
+        methodStats.calls.increment();
+        if (!success) {
+            methodStats.errors.increment();
+        }
+        methodStats.record(nanos);
+    }
+
+    @Override
+    public void callRetried(String method) {
+        getStats(method).retries.increment();
+    }
+
+    @Override
+    public void bytesSent(String method, long bytes) {
+        getStats(method).bytesSent.add(bytes);
+    }
+
+    @Override
+    public void bytesReceived(String method, long bytes) {
+        getStats(method).bytesReceived.add(bytes);
+    }
+
+    @Override
+    public void bugsReturned(String method, int count) {
+        getStats(method).bugs.add(count);
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientException;
+import org.apache.xmlrpc.client.XmlRpcTransport;
+import org.apache.xmlrpc.client.XmlRpcTransportFactory;
+
+/**
+ * Transport factory reusing the persistent HTTP connections of the JDK.
+ *
+ * The default XML-RPC transport disconnects the HttpURLConnection after
+ * every call, which closes the socket. This transport only closes the
+ * response stream, so the connection goes back to the JDK keep-alive cache
+ * and the next call to the same host reuses it. The number of idle
+ * connections kept per host is set by the http.maxConnections system
+ * property (5 by default), the number of calls in flight is limited here.
+ */
+final class KeepAliveTransportFactory implements XmlRpcTransportFactory {
+    private final XmlRpcClient client;
+    private final BugzillaMetrics metrics;
+    private final Semaphore connections;
+
+    KeepAliveTransportFactory(XmlRpcClient client, BugzillaMetrics metrics, int maxConnections) {
+        this.client = client;
+        this.metrics = metrics;
+        this.connections = new Semaphore(maxConnections, true);
+    }
+
+    @Override
+    public XmlRpcTransport getTransport() {
+        return new KeepAliveTransport();
+    }
+
+    private class KeepAliveTransport extends MeteredTransportFactory.SunTransport {
+        private InputStream response;
+
+        KeepAliveTransport() {
+            super(client, metrics);
+        }
+
+        @Override
+        public Object sendRequest(XmlRpcRequest request) throws XmlRpcException {
+            try {
+                connections.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XmlRpcClientException("Interrupted while waiting for a free connection", e);
+            }
+
+            try {
+                return super.sendRequest(request);
+            } finally {
+                connections.release();
+            }
+        }
+
+        @Override
+        protected InputStream getInputStream() throws XmlRpcException {
+            response = super.getInputStream();
+            return response;
+        }
+
+        @Override
+        protected void close() throws XmlRpcClientException {
+            if (response == null) {
+                // The request or the status failed, do not reuse the connection
+                super.close();
+                return;
+            }
+
+            try {
+                response.close();
+            } catch (IOException e) {
+                throw new XmlRpcClientException("Failed to close the response", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Byte counting stream wrapper reporting the total when closed.
+ */
+final class MeteredStream {
+    private MeteredStream() {
+    }
+
+    static InputStream input(InputStream in, LongConsumer onClose) {
+        return new FilterInputStream(in) {
+            private long count = 0;
+            private boolean closed = false;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    count++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    count += n;
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                count += skipped;
+                return skipped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    onClose.accept(count);
+                }
+                super.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcSunHttpTransport;
+import org.apache.xmlrpc.client.XmlRpcTransportFactory;
+import org.xml.sax.SAXException;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Transport factories reporting the size of the requests and responses
+ * (as sent over the wire, after compression) to {@link BugzillaMetrics}.
+ */
+final class MeteredTransportFactory {
+    private MeteredTransportFactory() {
+    }
+
+    static XmlRpcTransportFactory sun(XmlRpcClient client, BugzillaMetrics metrics) {
+        return () -> new SunTransport(client, metrics);
+    }
+
+    static class SunTransport extends XmlRpcSunHttpTransport {
+        private final BugzillaMetrics metrics;
+        private String method;
+
+        SunTransport(XmlRpcClient client, BugzillaMetrics metrics) {
+            super(client);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object sendRequest(XmlRpcRequest request) throws XmlRpcException {
+            method = request.getMethodName();
+            return super.sendRequest(request);
+        }
+
+        @Override
+        protected void writeRequest(ReqWriter writer) throws XmlRpcException, IOException, SAXException {
+            super.writeRequest(out -> writeCounted(writer::write, out, metrics, method));
+        }
+
+        @Override
+        protected InputStream getInputStream() throws XmlRpcException {
+            return MeteredStream.input(super.getInputStream(), bytes -> metrics.bytesReceived(method, bytes));
+        }
+    }
+
+    private interface RequestWriter {
+        void write(OutputStream out) throws XmlRpcException, IOException, SAXException;
+    }
+
+    private static void writeCounted(RequestWriter writer, OutputStream out, BugzillaMetrics metrics, String method)
+            throws XmlRpcException, IOException, SAXException {
+        CountingOutputStream counted = new CountingOutputStream(out);
+        writer.write(counted);
+        metrics.bytesSent(method, counted.getCount());
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Iterator that loads its elements page by page. The page loader gets
+ * the offset of the first element it should return and the iteration
+ * stops at the first empty page.
+ *
+ * The next page is only requested once the current one was fully consumed.
+ */
+class PagedIterator<T> implements Iterator<T> {
+    private final IntFunction<Collection<T>> pageLoader;
+    private Iterator<T> current = Collections.emptyIterator();
+    private int offset = 0;
+    private boolean exhausted = false;
+
+    PagedIterator(IntFunction<Collection<T>> pageLoader) {
+        this.pageLoader = pageLoader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext() && !exhausted) {
+            Collection<T> page = pageLoader.apply(offset);
+            if (page.isEmpty()) {
+                exhausted = true;
+            } else {
+                offset += page.size();
+                current = page.iterator();
+            }
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+}
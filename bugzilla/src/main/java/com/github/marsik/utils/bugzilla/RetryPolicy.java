@@ -0,0 +1,26 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Value;
+
+/**
+ * Exponential backoff with full jitter: the n-th retry waits a random time
+ * between zero and min(maxDelay, baseDelay * 2^n) milliseconds.
+ */
+@Value
+public class RetryPolicy {
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0);
+
+    int maxRetries;
+    long baseDelayMillis;
+    long maxDelayMillis;
+
+    public long delay(int attempt) {
+        long ceiling = baseDelayMillis << Math.min(attempt, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
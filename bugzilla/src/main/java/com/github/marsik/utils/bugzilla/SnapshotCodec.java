@@ -0,0 +1,164 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact tagged binary encoding of the values XML-RPC returns
+ * (strings, numbers, booleans, dates, byte arrays, arrays, lists and maps).
+ */
+final class SnapshotCodec {
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte DATE = 6;
+    private static final byte BYTES = 7;
+    private static final byte ARRAY = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+
+    private SnapshotCodec() {
+    }
+
+    static void write(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            out.writeInt(((byte[]) value).length);
+            out.write((byte[]) value);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            out.writeByte(ARRAY);
+            out.writeInt(array.length);
+            for (Object item: array) {
+                write(out, item);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> list = (Collection<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object item: list) {
+                write(out, item);
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else {
+            throw new IOException("Unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Write a map without the type tag, the counterpart of {@link #readMap}.
+     */
+    static void writeMap(DataOutput out, Map<?, ?> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry: map.entrySet()) {
+            writeString(out, entry.getKey().toString());
+            write(out, entry.getValue());
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static Object read(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INT:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case DOUBLE:
+                return in.getDouble();
+            case BOOLEAN:
+                return in.get() != 0;
+            case DATE:
+                return new Date(in.getLong());
+            case BYTES:
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                return bytes;
+            case ARRAY:
+                Object[] array = new Object[in.getInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = read(in);
+                }
+                return array;
+            case LIST:
+                int size = in.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(in));
+                }
+                return list;
+            case MAP:
+                return readMap(in);
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    static Map<String, Object> readMap(ByteBuffer in) throws IOException {
+        int size = in.getInt();
+        Map<String, Object> map = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            map.put(key, read(in));
+        }
+        return map;
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            in.duplicate().get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        // Buffer cast keeps the Java 8 signature when built on a newer JDK
+        ((Buffer) in).position(in.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,406 @@
+package com.github.marsik.utils.bugzilla;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.xmlrpc.client.XmlRpcHttpTransportException;
+
+import com.github.marsik.util.functional.ConsumerWithException;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Minimal XML-RPC call that hands the response to a pull parser instead
+ * of decoding it into a single object tree. Used for the responses that
+ * can get huge (Bug.comments and Bug.history).
+ *
+ * Dates are sent and parsed as UTC, which is what Bugzilla uses.
+ */
+class StreamingXmlRpcCall {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HH:mm:ss");
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Receives the parser positioned at the start of the value of the
+     * top level "bugs" member. It must consume the value including
+     * its closing element.
+     */
+    interface BugsHandler {
+        void handle(StreamingXmlRpcCall call) throws Exception;
+    }
+
+    private final String method;
+    private final BugzillaMetrics metrics;
+    private XMLStreamReader reader;
+
+    StreamingXmlRpcCall(String method, BugzillaMetrics metrics) {
+        this.method = method;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Carries an exception thrown by the consumer of the parsed values through
+     * the parser, so it is not mistaken for a failure of the call.
+     */
+    static class ConsumerException extends Exception {
+        ConsumerException(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
+
+    void execute(URL url, int timeout, boolean gzip, Map<String, Object> arguments, BugsHandler handler)
+            throws ConsumerException {
+        HttpURLConnection connection = null;
+        boolean completed = false;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestProperty("Content-Type", "text/xml; charset=UTF-8");
+            if (gzip) {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+
+            try (CountingOutputStream out = new CountingOutputStream(connection.getOutputStream())) {
+                writeRequest(out, arguments);
+                metrics.bytesSent(method, out.getCount());
+            }
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new BugzillaException(method, new XmlRpcHttpTransportException(status, connection.getResponseMessage()));
+            }
+
+            InputStream raw = MeteredStream.input(connection.getInputStream(), bytes -> metrics.bytesReceived(method, bytes));
+            try (InputStream in = "gzip".equalsIgnoreCase(connection.getContentEncoding())
+                    ? new GZIPInputStream(raw)
+                    : raw) {
+                read(in, handler);
+            }
+            completed = true;
+        } catch (BugzillaException | ConsumerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BugzillaException(method, e);
+        } finally {
+            // A connection with an error status or a response that was not
+            // read to the end can not be reused
+            if (!completed && connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Parse a methodResponse document, the "bugs" member is passed to the handler.
+     */
+    void read(InputStream in, BugsHandler handler) throws Exception {
+        reader = INPUT_FACTORY.createXMLStreamReader(in, "UTF-8");
+        try {
+            readResponse(handler);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Pass a parsed value to the consumer.
+     */
+    <T> void deliver(ConsumerWithException<T> consumer, T value) throws ConsumerException {
+        try {
+            consumer.accept(value);
+        } catch (Exception e) {
+            throw new ConsumerException(e);
+        }
+    }
+
+    private void writeRequest(OutputStream out, Map<String, Object> arguments) throws XMLStreamException {
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement("methodCall");
+        writer.writeStartElement("methodName");
+        writer.writeCharacters(method);
+        writer.writeEndElement();
+        writer.writeStartElement("params");
+        writer.writeStartElement("param");
+        writeValue(writer, arguments);
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+    }
+
+    private void writeValue(XMLStreamWriter writer, Object value) throws XMLStreamException {
+        writer.writeStartElement("value");
+        if (value instanceof Map) {
+            writer.writeStartElement("struct");
+            for (Map.Entry<?, ?> entry: ((Map<?, ?>) value).entrySet()) {
+                writer.writeStartElement("member");
+                writer.writeStartElement("name");
+                writer.writeCharacters(entry.getKey().toString());
+                writer.writeEndElement();
+                writeValue(writer, entry.getValue());
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        } else if (value instanceof Collection || value instanceof Object[]) {
+            Collection<?> items = value instanceof Collection ? (Collection<?>) value : Arrays.asList((Object[]) value);
+            writer.writeStartElement("array");
+            writer.writeStartElement("data");
+            for (Object item: items) {
+                writeValue(writer, item);
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+        } else if (value instanceof Integer) {
+            writeScalar(writer, "int", value.toString());
+        } else if (value instanceof Boolean) {
+            writeScalar(writer, "boolean", (Boolean) value ? "1" : "0");
+        } else if (value instanceof Double) {
+            writeScalar(writer, "double", value.toString());
+        } else if (value instanceof Date) {
+            writeScalar(writer, "dateTime.iso8601",
+                    DATE_TIME.format(LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneOffset.UTC)));
+        } else {
+            writeScalar(writer, "string", String.valueOf(value));
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeScalar(XMLStreamWriter writer, String type, String value) throws XMLStreamException {
+        writer.writeStartElement(type);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    private void readResponse(BugsHandler handler) throws Exception {
+        expectStart("methodResponse");
+        reader.nextTag();
+        if ("fault".equals(reader.getLocalName())) {
+            reader.nextTag();
+            Map<String, Object> fault = asMap(readValue());
+            throw new BugzillaException(method, "Bugzilla call " + method + " failed: "
+                    + fault.get("faultCode") + " " + fault.get("faultString"));
+        }
+
+        expectCurrent("params");
+        expectStart("param");
+        expectStart("value");
+        expectStart("struct");
+        while (nextMember()) {
+            String name = readMemberName();
+            if ("bugs".equals(name)) {
+                handler.handle(this);
+            } else {
+                readValue();
+            }
+            reader.nextTag();
+        }
+    }
+
+    /**
+     * Move to the next struct member.
+     *
+     * @return false when the end of the struct was reached
+     */
+    boolean nextMember() throws XMLStreamException {
+        return reader.nextTag() == XMLStreamConstants.START_ELEMENT;
+    }
+
+    /**
+     * Read the name of the current member and move to the start of its value.
+     */
+    String readMemberName() throws XMLStreamException {
+        expectCurrent("member");
+        expectStart("name");
+        String name = reader.getElementText();
+        expectStart("value");
+        return name;
+    }
+
+    /**
+     * Move to the value of the next array item. Expects to be at the start
+     * of the array value or after the previous item.
+     *
+     * @return false when the end of the array was reached
+     */
+    boolean nextArrayItem() throws XMLStreamException {
+        int event = reader.nextTag();
+        if (event == XMLStreamConstants.START_ELEMENT && "array".equals(reader.getLocalName())) {
+            expectStart("data");
+            event = reader.nextTag();
+        }
+
+        if (event == XMLStreamConstants.END_ELEMENT && "data".equals(reader.getLocalName())) {
+            // </data></array></value>
+            reader.nextTag();
+            reader.nextTag();
+            return false;
+        }
+
+        expectCurrent("value");
+        return true;
+    }
+
+    /**
+     * Expects to be at the start of a struct value and moves into it.
+     */
+    void enterStruct() throws XMLStreamException {
+        expectStart("struct");
+    }
+
+    /**
+     * Leaves the struct entered by enterStruct after its last member was read.
+     */
+    void leaveStruct() throws XMLStreamException {
+        reader.nextTag();
+    }
+
+    /**
+     * Move to the end of the current member after its value was read.
+     */
+    void endMember() throws XMLStreamException {
+        reader.nextTag();
+    }
+
+    /**
+     * Decode the value the parser is at, including its closing element.
+     */
+    Object readValue() throws XMLStreamException {
+        expectCurrent("value");
+        StringBuilder text = new StringBuilder();
+        int event = reader.next();
+        while (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE
+                || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.COMMENT) {
+            if (event != XMLStreamConstants.COMMENT) {
+                text.append(reader.getText());
+            }
+            event = reader.next();
+        }
+
+        if (event == XMLStreamConstants.END_ELEMENT) {
+            // Untyped value is a string
+            return text.toString();
+        }
+
+        Object value;
+        String type = reader.getLocalName();
+        switch (type) {
+            case "string":
+                value = reader.getElementText();
+                break;
+            case "int":
+            case "i4":
+                value = Integer.valueOf(reader.getElementText().trim());
+                break;
+            case "i8":
+                value = Long.valueOf(reader.getElementText().trim());
+                break;
+            case "double":
+                value = Double.valueOf(reader.getElementText().trim());
+                break;
+            case "boolean":
+                value = "1".equals(reader.getElementText().trim());
+                break;
+            case "dateTime.iso8601":
+                value = parseDate(reader.getElementText().trim());
+                break;
+            case "base64":
+                value = Base64.getMimeDecoder().decode(reader.getElementText().trim());
+                break;
+            case "nil":
+                reader.getElementText();
+                value = null;
+                break;
+            case "struct":
+                value = readStruct();
+                break;
+            case "array":
+                value = readArray();
+                break;
+            default:
+                throw new XMLStreamException("Unknown XML-RPC type " + type, reader.getLocation());
+        }
+
+        reader.nextTag();
+        return value;
+    }
+
+    private Map<String, Object> readStruct() throws XMLStreamException {
+        Map<String, Object> struct = new HashMap<>();
+        while (nextMember()) {
+            String name = readMemberName();
+            struct.put(name, readValue());
+            reader.nextTag();
+        }
+        return struct;
+    }
+
+    private Object[] readArray() throws XMLStreamException {
+        List<Object> items = new ArrayList<>();
+        expectStart("data");
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            items.add(readValue());
+        }
+        reader.nextTag();
+        return items.toArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static Date parseDate(String value) {
+        String plain = value.replace("-", "").replace("Z", "");
+        return Date.from(LocalDateTime.parse(plain, DATE_TIME).toInstant(ZoneOffset.UTC));
+    }
+
+    private void expectStart(String element) throws XMLStreamException {
+        reader.nextTag();
+        expectCurrent(element);
+    }
+
+    private void expectCurrent(String element) throws XMLStreamException {
+        if (!reader.isStartElement() || !element.equals(reader.getLocalName())) {
+            throw new XMLStreamException("Expected <" + element + "> in the " + method + " response", reader.getLocation());
+        }
+    }
+}
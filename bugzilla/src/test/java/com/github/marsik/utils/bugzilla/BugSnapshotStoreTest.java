@@ -0,0 +1,163 @@
+package com.github.marsik.utils.bugzilla;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BugSnapshotStoreTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static Bug bug(int id, String status) {
+        Bug bug = new Bug();
+        bug.put("id", id);
+        bug.put("status", status);
+        bug.put("is_open", true);
+        bug.put("last_change_time", new Date(1500000000000L));
+        bug.put("keywords", Arrays.asList("Triaged", "Regression"));
+        bug.put("blocks", new Object[] {1, 2});
+        return bug;
+    }
+
+    @Test
+    public void appendedRecordsAreLoadedAfterReopen() throws IOException {
+        Map<String, Object> comment = new HashMap<>();
+        comment.put("text", "Reproduced");
+        comment.put("count", 0L);
+        CallDictResult comments = new CallDictResult(Collections.singletonMap("comments", Collections.singletonList(comment)));
+        CallDictResult history = new CallDictResult(Collections.singletonMap("history", Collections.emptyList()));
+        Instant watermark = Instant.ofEpochMilli(1500000000000L);
+
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            store.putBug(bug(1, "NEW"));
+            store.putBug(bug(2, "NEW"));
+            store.putBug(bug(1, "ASSIGNED"));
+            store.putComments("1", comments);
+            store.putHistory("1", history);
+            store.setWatermark(watermark);
+            store.flush();
+        }
+
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            BugSnapshotStore.Snapshot snapshot = store.load();
+
+            assertEquals(2, snapshot.getBugs().size());
+            Bug bug = snapshot.getBugs().get("1");
+            assertEquals(1, bug.get("id"));
+            assertEquals("ASSIGNED", bug.get("status"));
+            assertEquals(true, bug.get("is_open"));
+            assertEquals(new Date(1500000000000L), bug.get("last_change_time"));
+            assertEquals(Arrays.asList("Triaged", "Regression"), bug.get("keywords"));
+            assertArrayEquals(new Object[] {1, 2}, (Object[]) bug.get("blocks"));
+
+            assertEquals(comments, snapshot.getComments().get("1"));
+            assertEquals(history, snapshot.getHistory().get("1"));
+            assertEquals(watermark, snapshot.getWatermark());
+        }
+    }
+
+    @Test
+    public void removedBugIsNotLoaded() throws IOException {
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            store.putBug(bug(1, "NEW"));
+            store.putComments("1", new CallDictResult());
+            store.removeBug("1");
+        }
+
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            BugSnapshotStore.Snapshot snapshot = store.load();
+            assertTrue(snapshot.getBugs().isEmpty());
+            assertTrue(snapshot.getComments().isEmpty());
+            assertNull(snapshot.getWatermark());
+        }
+    }
+
+    @Test
+    public void tornRecordIsIgnoredAndTruncated() throws IOException {
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            store.putBug(bug(1, "NEW"));
+        }
+
+        Path log = directory.resolve("bugs.log");
+        long size = Files.size(log);
+        Files.write(log, new byte[] {0, 0, 1, 0, 1, 2}, StandardOpenOption.APPEND);
+
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            assertEquals(1, store.load().getBugs().size());
+        }
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    public void flushDoesNotCompactLiveComments() throws IOException {
+        Path log = directory.resolve("bugs.log");
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            for (int id = 0; id < 5000; id++) {
+                store.putBug(bug(id, "NEW"));
+                store.putComments(Integer.toString(id), new CallDictResult());
+                store.putHistory(Integer.toString(id), new CallDictResult());
+            }
+            store.flush();
+            long size = Files.size(log);
+
+            // Only the bugs are overwritten, less than half of the records is garbage
+            for (int id = 0; id < 5000; id++) {
+                store.putBug(bug(id, "NEW"));
+            }
+            store.flush();
+            assertTrue(Files.size(log) > size);
+        }
+    }
+
+    @Test
+    public void flushCompactsOverwrittenRecords() throws IOException {
+        Path log = directory.resolve("bugs.log");
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            for (int round = 0; round < 4; round++) {
+                for (int id = 0; id < 5000; id++) {
+                    store.putBug(bug(id, "NEW"));
+                }
+            }
+            store.flush();
+        }
+
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            assertEquals(5000, store.load().getBugs().size());
+        }
+        long compacted = Files.size(log);
+
+        try (BugSnapshotStore store = new BugSnapshotStore(directory)) {
+            store.compact();
+        }
+        assertEquals(compacted, Files.size(log));
+    }
+}
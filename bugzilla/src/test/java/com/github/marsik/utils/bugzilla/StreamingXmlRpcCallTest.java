@@ -0,0 +1,134 @@
+package com.github.marsik.utils.bugzilla;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StreamingXmlRpcCallTest {
+    private static String response(String bugs) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><methodResponse><params><param><value><struct>"
+                + "<member><name>faults</name><value><array><data/></array></value></member>"
+                + "<member><name>bugs</name>" + bugs + "</member>"
+                + "</struct></value></param></params></methodResponse>";
+    }
+
+    private static void read(String xml, StreamingXmlRpcCall.BugsHandler handler) throws Exception {
+        new StreamingXmlRpcCall("Bug.test", BugzillaMetrics.NOOP)
+                .read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), handler);
+    }
+
+    private static Object readBugs(String xml) throws Exception {
+        List<Object> bugs = new ArrayList<>();
+        read(xml, call -> bugs.add(call.readValue()));
+        assertEquals(1, bugs.size());
+        return bugs.get(0);
+    }
+
+    @Test
+    public void nestedStructsAndArraysAreDecoded() throws Exception {
+        Object bugs = readBugs(response("<value><struct>"
+                + "<member><name>12</name><value><struct>"
+                + "<member><name>comments</name><value><array><data>"
+                + "<value><struct>"
+                + "<member><name>id</name><value><int>7</int></value></member>"
+                + "<member><name>text</name><value><string>a &amp; b</string></value></member>"
+                + "<member><name>private</name><value><boolean>0</boolean></value></member>"
+                + "<member><name>time</name><value><dateTime.iso8601>20200101T10:00:00</dateTime.iso8601></value></member>"
+                + "<member><name>tags</name><value><array><data><value>x</value><value><i4>2</i4></value></data></array></value></member>"
+                + "</struct></value>"
+                + "</data></array></value></member>"
+                + "</struct></value></member>"
+                + "</struct></value>"));
+
+        Map<String, Object> bug = StreamingXmlRpcCall.asMap(StreamingXmlRpcCall.asMap(bugs).get("12"));
+        Object[] comments = (Object[]) bug.get("comments");
+        assertEquals(1, comments.length);
+
+        Map<String, Object> comment = StreamingXmlRpcCall.asMap(comments[0]);
+        assertEquals(7, comment.get("id"));
+        assertEquals("a & b", comment.get("text"));
+        assertEquals(false, comment.get("private"));
+        assertEquals(new Date(1577872800000L), comment.get("time"));
+        assertArrayEquals(new Object[]{"x", 2}, (Object[]) comment.get("tags"));
+    }
+
+    @Test
+    public void arrayItemsAreStreamedOneByOne() throws Exception {
+        List<Object> ids = new ArrayList<>();
+        read(response("<value><array><data>"
+                + "<value><struct><member><name>id</name><value><int>5</int></value></member></struct></value>"
+                + "<value><struct><member><name>id</name><value><int>6</int></value></member></struct></value>"
+                + "</data></array></value>"), call -> {
+            while (call.nextArrayItem()) {
+                call.enterStruct();
+                while (call.nextMember()) {
+                    assertEquals("id", call.readMemberName());
+                    ids.add(call.readValue());
+                    call.endMember();
+                }
+                call.leaveStruct();
+            }
+        });
+
+        assertEquals(2, ids.size());
+        assertEquals(5, ids.get(0));
+        assertEquals(6, ids.get(1));
+    }
+
+    @Test
+    public void emptyValuesAreDecoded() throws Exception {
+        Map<String, Object> bugs = StreamingXmlRpcCall.asMap(readBugs(response("<value><struct>"
+                + "<member><name>untyped</name><value></value></member>"
+                + "<member><name>selfClosing</name><value/></member>"
+                + "<member><name>string</name><value><string/></value></member>"
+                + "<member><name>array</name><value><array><data/></array></value></member>"
+                + "<member><name>struct</name><value><struct/></value></member>"
+                + "<member><name>nil</name><value><nil/></value></member>"
+                + "</struct></value>")));
+
+        assertEquals("", bugs.get("untyped"));
+        assertEquals("", bugs.get("selfClosing"));
+        assertEquals("", bugs.get("string"));
+        assertArrayEquals(new Object[0], (Object[]) bugs.get("array"));
+        assertEquals(Collections.emptyMap(), bugs.get("struct"));
+        assertTrue(bugs.containsKey("nil"));
+        assertNull(bugs.get("nil"));
+    }
+
+    @Test
+    public void emptyArrayEndsTheStreamedItems() throws Exception {
+        List<Boolean> items = new ArrayList<>();
+        read(response("<value><array><data></data></array></value>"), call -> items.add(call.nextArrayItem()));
+
+        assertEquals(1, items.size());
+        assertFalse(items.get(0));
+    }
+
+    @Test
+    public void faultIsReported() throws Exception {
+        String fault = "<?xml version=\"1.0\"?><methodResponse><fault><value><struct>"
+                + "<member><name>faultCode</name><value><int>101</int></value></member>"
+                + "<member><name>faultString</name><value><string>Bug #1 does not exist.</string></value></member>"
+                + "</struct></value></fault></methodResponse>";
+        try {
+            read(fault, call -> fail("The handler must not be called for a fault"));
+            fail("Fault was not reported");
+        } catch (BugzillaException e) {
+            assertTrue(e.getMessage().contains("101"));
+            assertTrue(e.getMessage().contains("Bug #1 does not exist."));
+        }
+    }
+}
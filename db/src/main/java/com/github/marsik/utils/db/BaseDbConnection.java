@@ -24,6 +24,59 @@ public class BaseDbConnection<D extends DataSource> {
         }
     }
 
+    /**
+     * inManagedTransaction runs the consumer with auto commit disabled,
+     * commits when it returns and rolls back when it throws
+     */
+    public <T> T inManagedTransaction(TransactionContext<T> consumer) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return managed(connection, consumer);
+        }
+    }
+
+    static <T> T managed(Connection connection, TransactionContext<T> consumer) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        Throwable failure = null;
+        try {
+            T result = consumer.withConnection(connection);
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            failure = e;
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        } catch (Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            // Must not replace the exception that failed the transaction
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException restoreFailure) {
+                if (failure == null) {
+                    throw restoreFailure;
+                }
+                failure.addSuppressed(restoreFailure);
+            }
+        }
+    }
+
+    /**
+     * bulkWriter prepares a batched writer for many rows of the same statement
+     *
+     * @param sql insert, update or upsert statement with parameters
+     * @param binder sets the statement parameters from a row
+     * @return writer, configure it before calling write
+     */
+    public <R> BulkWriter<R> bulkWriter(String sql, BulkWriter.RowBinder<R> binder) {
+        return new BulkWriter<>(dataSource, sql, binder);
+    }
+
     public void updateDatabase() {
         updateDatabase(false);
     }
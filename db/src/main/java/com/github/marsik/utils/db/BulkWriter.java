@@ -0,0 +1,255 @@
+package com.github.marsik.utils.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BulkWriter writes many rows using a single prepared statement.
+ *
+ * Rows are sent using JDBC batches of {@link #setBatchSize} rows and
+ * every {@link #setBatchesPerTransaction} batches are committed as one
+ * transaction. With {@link #setParallelism} above one the transactions
+ * are written by several workers, each using its own connection, and
+ * the rows are not written in the input order.
+ *
+ * A failed transaction is rolled back and stops the write, transactions
+ * committed before the failure are kept. Use an upsert statement
+ * (MERGE, ON CONFLICT) when the write has to be repeatable.
+ *
+ * Instances are created by {@link BaseDbConnection#bulkWriter}.
+ */
+@Slf4j
+public class BulkWriter<R> {
+    public interface RowBinder<R> {
+        void bind(final PreparedStatement statement, final R row) throws SQLException;
+    }
+
+    @Value
+    public static class Result {
+        long rows;
+        long batches;
+        long transactions;
+        long elapsedNanos;
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+    }
+
+    private static final List<?> END = Collections.emptyList();
+
+    private final DataSource dataSource;
+    private final String sql;
+    private final RowBinder<R> binder;
+
+    private int batchSize = 1000;
+    private int batchesPerTransaction = 10;
+    private int parallelism = 1;
+
+    BulkWriter(DataSource dataSource, String sql, RowBinder<R> binder) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.binder = binder;
+    }
+
+    public BulkWriter<R> setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public BulkWriter<R> setBatchesPerTransaction(int batchesPerTransaction) {
+        if (batchesPerTransaction < 1) {
+            throw new IllegalArgumentException("Number of batches per transaction must be positive");
+        }
+        this.batchesPerTransaction = batchesPerTransaction;
+        return this;
+    }
+
+    /**
+     * @param parallelism number of writers, each one uses a separate connection
+     */
+    public BulkWriter<R> setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public Result write(Stream<R> rows) throws SQLException {
+        return write(rows.iterator());
+    }
+
+    public Result write(Iterable<R> rows) throws SQLException {
+        return write(rows.iterator());
+    }
+
+    public Result write(Iterator<R> rows) throws SQLException {
+        long start = System.nanoTime();
+        Counters counters = new Counters();
+
+        if (parallelism == 1) {
+            writeSequential(rows, counters);
+        } else {
+            writeParallel(rows, counters);
+        }
+
+        Result result = new Result(counters.rows.get(), counters.batches.get(), counters.transactions.get(),
+                System.nanoTime() - start);
+        log.debug("Wrote {} rows in {} transactions, {} rows/s", result.getRows(), result.getTransactions(),
+                (long) result.getRowsPerSecond());
+        return result;
+    }
+
+    private static class Counters {
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong transactions = new AtomicLong();
+    }
+
+    private List<R> nextTransaction(Iterator<R> rows) {
+        int size = batchSize * batchesPerTransaction;
+        List<R> chunk = new ArrayList<>(Math.min(size, 16 * 1024));
+        while (chunk.size() < size && rows.hasNext()) {
+            chunk.add(rows.next());
+        }
+        return chunk;
+    }
+
+    private void writeSequential(Iterator<R> rows, Counters counters) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            List<R> chunk;
+            while (!(chunk = nextTransaction(rows)).isEmpty()) {
+                writeTransaction(connection, statement, chunk, counters);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeParallel(Iterator<R> rows, Counters counters) throws SQLException {
+        // Bounded so the rows are not read much faster than they are written
+        BlockingQueue<List<R>> queue = new ArrayBlockingQueue<>(parallelism);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < parallelism; i++) {
+                workers.add(executor.submit(() -> {
+                    try (Connection connection = dataSource.getConnection();
+                         PreparedStatement statement = connection.prepareStatement(sql)) {
+                        while (failure.get() == null) {
+                            List<R> chunk = queue.poll(100, TimeUnit.MILLISECONDS);
+                            if (chunk == END) {
+                                break;
+                            } else if (chunk != null) {
+                                writeTransaction(connection, statement, chunk, counters);
+                            }
+                        }
+                    } catch (SQLException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+
+            List<R> chunk;
+            while (failure.get() == null && !(chunk = nextTransaction(rows)).isEmpty()) {
+                offer(queue, chunk, failure);
+            }
+            for (int i = 0; i < parallelism; i++) {
+                offer(queue, (List<R>) END, failure);
+            }
+
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while writing rows", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            failure.compareAndSet(null, (Exception) e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Exception e = failure.get();
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e != null) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Waits for a free slot in the queue, gives up when a writer failed
+     */
+    private static <T> void offer(BlockingQueue<T> queue, T item, AtomicReference<Exception> failure) throws InterruptedException {
+        while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                return;
+            }
+        }
+    }
+
+    private void writeTransaction(Connection connection, PreparedStatement statement, List<R> chunk, Counters counters) throws SQLException {
+        int batches = BaseDbConnection.managed(connection, c -> {
+            int executed = 0;
+            int pending = 0;
+            try {
+                for (R row : chunk) {
+                    binder.bind(statement, row);
+                    statement.addBatch();
+                    if (++pending == batchSize) {
+                        statement.executeBatch();
+                        executed++;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                    executed++;
+                }
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    statement.clearBatch();
+                } catch (SQLException clearFailure) {
+                    e.addSuppressed(clearFailure);
+                }
+                throw e;
+            }
+            return executed;
+        });
+        counters.rows.addAndGet(chunk.size());
+        counters.batches.addAndGet(batches);
+        counters.transactions.incrementAndGet();
+    }
+}
@@ -1,10 +1,16 @@
 package com.github.marsik.json;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.zalando.jackson.datatype.money.MoneyModule;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.util.ISO8601DateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -20,17 +26,201 @@ import lombok.Getter;
  * Ex.:
  *
  * CREATE ALIAS JSON_VALID FOR "com.github.marsik.json.H2JsonExt.isValidJson";
+ * CREATE ALIAS JSON_INVALID_REASON FOR "com.github.marsik.json.H2JsonExt.explainInvalidJson";
+ * CREATE ALIAS JSON_EXTRACT FOR "com.github.marsik.json.H2JsonExt.extract";
+ * CREATE ALIAS JSON_VALUE FOR "com.github.marsik.json.H2JsonExt.extractText";
+ * CREATE ALIAS JSON_ARRAY_LENGTH FOR "com.github.marsik.json.H2JsonExt.arrayLength";
+ * CREATE ALIAS JSON_CONTAINS FOR "com.github.marsik.json.H2JsonExt.contains";
+ * CREATE ALIAS JSON_KEYS FOR "com.github.marsik.json.H2JsonExt.keys";
+ *
+ * Paths use the {@link JsonPath} syntax, $.member[index]. SQL NULL is returned
+ * when any argument is NULL, when the document is not valid json or when
+ * the path does not exist.
  */
 @Getter
 public class H2JsonExt {
     private final static ObjectMapper objectMapper = new ObjectMapper();
 
-    public static boolean isValidJson(String input) {
+    private final static int MAX_CACHED_PATHS = 256;
+    private final static ConcurrentMap<String, JsonPath> paths = new ConcurrentHashMap<>();
+
+    // The same row is often queried by several functions in one statement
+    private final static JsonDocumentCache documents = new JsonDocumentCache(objectMapper, 64, 256 * 1024);
+
+    /**
+     * @return NULL for NULL input, so CHECK constraints accept NULL in nullable columns
+     */
+    public static Boolean isValidJson(String input) {
+        if (input == null) {
+            return null;
+        }
+        return JsonValidator.DEFAULT.isValid(input);
+    }
+
+    /**
+     * Validation with limits, use 0 for no limit
+     *
+     * CREATE ALIAS JSON_VALID_LIMITED FOR "com.github.marsik.json.H2JsonExt.isValidJson";
+     * ... CHECK JSON_VALID_LIMITED(DATA, 32, 1048576)
+     */
+    public static Boolean isValidJson(String input, int maxDepth, long maxSize) {
+        if (input == null) {
+            return null;
+        }
+        return new JsonValidator(maxDepth, maxSize).isValid(input);
+    }
+
+    /**
+     * @return description of the problem or NULL when the input is valid json or NULL
+     */
+    public static String explainInvalidJson(String input) {
+        if (input == null) {
+            return null;
+        }
+        return JsonValidator.DEFAULT.explain(input);
+    }
+
+    /**
+     * @return json text of the value at the path
+     */
+    public static String extract(String json, String path) {
+        JsonNode node = evaluate(json, path);
+        return node == null ? null : node.toString();
+    }
+
+    /**
+     * @return text of a scalar value at the path, json text for objects and arrays
+     */
+    public static String extractText(String json, String path) {
+        JsonNode node = evaluate(json, path);
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        return node.isValueNode() ? node.asText() : node.toString();
+    }
+
+    public static Integer arrayLength(String json) {
+        return arrayLength(json, "$");
+    }
+
+    public static Integer arrayLength(String json, String path) {
+        JsonNode node = evaluate(json, path);
+        return node != null && node.isArray() ? node.size() : null;
+    }
+
+    /**
+     * Containment follows the usual rules: objects contain all members of
+     * the candidate (recursively), arrays contain every element of a candidate
+     * array or the candidate itself, scalars have to be equal.
+     */
+    public static Boolean contains(String json, String candidate) {
+        return contains(json, candidate, "$");
+    }
+
+    public static Boolean contains(String json, String candidate, String path) {
+        if (candidate == null) {
+            return null;
+        }
+
+        JsonNode node = evaluate(json, path);
+        if (node == null) {
+            return null;
+        }
+
         try {
-            objectMapper.readTree(input);
-            return true;
+            return contains(node, objectMapper.readTree(candidate));
         } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid json candidate: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return json array with the member names of the object at the path
+     */
+    public static String keys(String json) {
+        return keys(json, "$");
+    }
+
+    public static String keys(String json, String path) {
+        JsonNode node = evaluate(json, path);
+        if (node == null || !node.isObject()) {
+            return null;
+        }
+
+        ArrayNode names = objectMapper.createArrayNode();
+        node.fieldNames().forEachRemaining(names::add);
+        return names.toString();
+    }
+
+    private static boolean contains(JsonNode target, JsonNode candidate) {
+        if (target.isObject()) {
+            if (!candidate.isObject()) {
+                return false;
+            }
+            Iterator<String> names = candidate.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                JsonNode member = target.get(name);
+                if (member == null || !contains(member, candidate.get(name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (target.isArray()) {
+            if (candidate.isArray()) {
+                for (JsonNode item : candidate) {
+                    if (!contains(target, item)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (JsonNode item : target) {
+                if (contains(item, candidate)) {
+                    return true;
+                }
+            }
             return false;
         }
+
+        if (target.isNumber() && candidate.isNumber()) {
+            return target.decimalValue().compareTo(candidate.decimalValue()) == 0;
+        }
+        return target.equals(candidate);
+    }
+
+    private static JsonNode evaluate(String json, String path) {
+        if (json == null || path == null) {
+            return null;
+        }
+
+        JsonPath compiled = compile(path);
+        try {
+            JsonNode tree = documents.get(json);
+            if (tree != null) {
+                return compiled.find(tree);
+            }
+
+            try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+                return compiled.find(parser);
+            }
+        } catch (IOException e) {
+            // A single broken row must not fail the whole query
+            return null;
+        }
+    }
+
+    private static JsonPath compile(String path) {
+        JsonPath compiled = paths.get(path);
+        if (compiled == null) {
+            if (paths.size() >= MAX_CACHED_PATHS) {
+                paths.clear();
+            }
+            compiled = JsonPath.compile(path);
+            paths.put(path, compiled);
+        }
+        return compiled;
     }
 }
@@ -1,21 +1,50 @@
 package com.github.marsik.json;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.zalando.jackson.datatype.money.MoneyModule;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
 import com.fasterxml.jackson.databind.util.ISO8601DateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
@@ -25,7 +54,20 @@ import lombok.extern.slf4j.Slf4j;
 public class JsonAdapter {
     private final ObjectMapper objectMapper;
 
+    // Readers and writers prefetch the root (de)serializer, so they are built
+    // once per type and dropped whenever the mapper configuration changes
+    private final ConcurrentMap<Type, JavaType> javaTypes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<JavaType, TypedReader<?>> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<JavaType, TypedWriter<?>> writers = new ConcurrentHashMap<>();
+
+    private boolean typeFirstOutput = false;
+
+    // Per thread output buffer for toJsonBytes, taken out while in use
+    // so nested serialization on the same thread gets its own buffer
+    private static final ThreadLocal<ByteArrayBuilder> OUTPUT_BUFFERS = new ThreadLocal<>();
+
     public final static String TYPE_FIELD = "@type";
+    private final static String TYPE_FIELD_NAME = "\"" + TYPE_FIELD + "\"";
 
     public JsonAdapter() {
         objectMapper = new ObjectMapper()
@@ -55,13 +97,313 @@ public class JsonAdapter {
         }
     }
 
+    /**
+     * TypedReader is a prebuilt reader for a single type, obtain it
+     * once using {@link #readerFor} and keep it on hot paths
+     *
+     * Polymorphic String and byte input that starts with the {@link #TYPE_FIELD}
+     * property of a registered subtype is passed straight to the subtype
+     * deserializer, other input is read by Jackson as usual. The subtypes
+     * are resolved when the reader is built, see {@link #registerSubtypes}.
+     */
+    public static class TypedReader<T> {
+        private final ObjectMapper objectMapper;
+        private final ObjectReader reader;
+        // null when the type is not polymorphic
+        private final Map<String, JsonDeserializer<Object>> dispatch;
+
+        private TypedReader(ObjectMapper objectMapper, ObjectReader reader, Map<String, JsonDeserializer<Object>> dispatch) {
+            this.objectMapper = objectMapper;
+            this.reader = reader;
+            this.dispatch = dispatch;
+        }
+
+        public T read(String input) throws IOException {
+            if (dispatch != null && startsWithType(input)) {
+                try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+                    JsonDeserializer<Object> deserializer = typeFirst(parser);
+                    if (deserializer != null) {
+                        return dispatch(deserializer, parser);
+                    }
+                }
+            }
+            return reader.readValue(input);
+        }
+
+        public T read(Reader input) throws IOException {
+            return reader.readValue(input);
+        }
+
+        public T read(byte[] input) throws IOException {
+            return read(input, 0, input.length);
+        }
+
+        public T read(byte[] input, int offset, int length) throws IOException {
+            if (dispatch != null && startsWithType(input, offset, length)) {
+                try (JsonParser parser = objectMapper.getFactory().createParser(input, offset, length)) {
+                    JsonDeserializer<Object> deserializer = typeFirst(parser);
+                    if (deserializer != null) {
+                        return dispatch(deserializer, parser);
+                    }
+                }
+            }
+            return reader.readValue(input, offset, length);
+        }
+
+        /**
+         * Reads the remaining content of the buffer, the buffer position
+         * is not changed. Heap buffers are parsed in place.
+         */
+        public T read(ByteBuffer input) throws IOException {
+            if (input.hasArray()) {
+                return read(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            }
+            return reader.readValue(new ByteBufferBackedInputStream(input.duplicate()));
+        }
+
+        public T read(InputStream input) throws IOException {
+            return reader.readValue(input);
+        }
+
+        T read(JsonParser parser) throws IOException {
+            return reader.readValue(parser);
+        }
+
+        /**
+         * Checks the input starts with the {@link #TYPE_FIELD} property before
+         * it is parsed, other input goes to Jackson without being parsed twice
+         */
+        private static boolean startsWithType(String input) {
+            int i = skipWhitespace(input, 0);
+            if (i == input.length() || input.charAt(i) != '{') {
+                return false;
+            }
+            i = skipWhitespace(input, i + 1);
+            return input.startsWith(TYPE_FIELD_NAME, i);
+        }
+
+        private static boolean startsWithType(byte[] input, int offset, int length) {
+            int end = offset + length;
+            int i = skipWhitespace(input, offset, end);
+            if (i == end || input[i] != '{') {
+                return false;
+            }
+            i = skipWhitespace(input, i + 1, end);
+            if (end - i < TYPE_FIELD_NAME.length()) {
+                return false;
+            }
+            for (int j = 0; j < TYPE_FIELD_NAME.length(); j++) {
+                if (input[i + j] != TYPE_FIELD_NAME.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int skipWhitespace(String input, int i) {
+            while (i < input.length() && isWhitespace(input.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private static int skipWhitespace(byte[] input, int i, int end) {
+            while (i < end && isWhitespace((char) input[i])) {
+                i++;
+            }
+            return i;
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        /**
+         * @return deserializer of the subtype when the input starts with its type id,
+         *         the parser then points to the token following the id
+         */
+        private JsonDeserializer<Object> typeFirst(JsonParser parser) throws IOException {
+            if (parser.nextToken() != JsonToken.START_OBJECT
+                    || parser.nextToken() != JsonToken.FIELD_NAME
+                    || !TYPE_FIELD.equals(parser.getCurrentName())
+                    || parser.nextToken() != JsonToken.VALUE_STRING) {
+                return null;
+            }
+
+            JsonDeserializer<Object> deserializer = dispatch.get(parser.getText());
+            if (deserializer != null) {
+                parser.nextToken();
+            }
+            return deserializer;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T dispatch(JsonDeserializer<Object> deserializer, JsonParser parser) throws IOException {
+            DefaultDeserializationContext context = ((DefaultDeserializationContext) objectMapper.getDeserializationContext())
+                    .createInstance(objectMapper.getDeserializationConfig(), parser, objectMapper.getInjectableValues());
+            return (T) deserializer.deserialize(parser, context);
+        }
+    }
+
+    /**
+     * TypedWriter is a prebuilt writer for a single type. Values are
+     * serialized as the declared type, use {@link #toJson} when
+     * the runtime type of the value should be used instead.
+     */
+    public static class TypedWriter<T> {
+        private final ObjectWriter writer;
+
+        private TypedWriter(ObjectWriter writer) {
+            this.writer = writer;
+        }
+
+        public String write(T value) throws JsonCreateException {
+            try {
+                return writer.writeValueAsString(value);
+            } catch (JsonProcessingException e) {
+                throw new JsonCreateException(e);
+            }
+        }
+
+        /**
+         * Writes the value as UTF-8 json, the output is not closed
+         */
+        public void write(T value, OutputStream output) throws IOException {
+            writer.writeValue(output, value);
+        }
+
+        /**
+         * Writes the value at the position of the buffer and advances it
+         *
+         * @throws java.nio.BufferOverflowException when the value does not fit
+         */
+        public void write(T value, ByteBuffer output) throws IOException {
+            writer.writeValue(new ByteBufferBackedOutputStream(output), value);
+        }
+
+        /**
+         * Serializes the value to UTF-8 bytes using a reused per thread buffer
+         */
+        public byte[] writeBytes(T value) throws JsonCreateException {
+            ByteArrayBuilder buffer = OUTPUT_BUFFERS.get();
+            if (buffer == null) {
+                buffer = new ByteArrayBuilder();
+            } else {
+                OUTPUT_BUFFERS.remove();
+            }
+
+            try {
+                writer.writeValue(buffer, value);
+                return buffer.toByteArray();
+            } catch (JsonProcessingException e) {
+                throw new JsonCreateException(e);
+            } catch (IOException e) {
+                throw new JsonCreateException(JsonMappingException.fromUnexpectedIOE(e));
+            } finally {
+                buffer.reset();
+                OUTPUT_BUFFERS.set(buffer);
+            }
+        }
+
+        ObjectWriter getWriter() {
+            return writer;
+        }
+    }
+
+    private JavaType javaType(Type type) {
+        return javaTypes.computeIfAbsent(type, objectMapper.getTypeFactory()::constructType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> TypedReader<T> reader(Type type) {
+        return (TypedReader<T>) readers.computeIfAbsent(javaType(type), t -> new TypedReader<>(objectMapper, objectMapper.readerFor(t), TypeDispatchTable.dispatchFor(objectMapper, t)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> TypedWriter<T> writer(Type type) {
+        return (TypedWriter<T>) writers.computeIfAbsent(javaType(type), t -> new TypedWriter<>(objectMapper.writerFor(t).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)));
+    }
+
+    private void clearCaches() {
+        javaTypes.clear();
+        readers.clear();
+        writers.clear();
+    }
+
+    public <T> TypedReader<T> readerFor(Class<T> type) {
+        return reader(type);
+    }
+
+    public <T> TypedReader<T> readerFor(TypeInfo<T> type) {
+        return reader(type.getReference().getType());
+    }
+
+    public <T> TypedWriter<T> writerFor(Class<T> type) {
+        return writer(type);
+    }
+
+    public <T> TypedWriter<T> writerFor(TypeInfo<T> type) {
+        return writer(type.getReference().getType());
+    }
+
     /**
      * registerSubtypes provides a way to tell json parser how to
      * interpret the @type value (it points the parser to the children)
+     *
+     * Readers resolve the type ids of the subtypes of their type to the
+     * subtype deserializers when they are built, not here, and use them
+     * when {@link #TYPE_FIELD} is the first property of the input. Readers
+     * obtained before this call keep the subtypes known at that time, call
+     * {@link #readerFor} again to pick up the new ones. Register the
+     * subtypes before handing out readers.
+     *
      * @param cls list of classes that can be returned when parsing polymorphic input
      */
-    public JsonAdapter registerSubtypes(Class<?>... cls) {
+    public synchronized JsonAdapter registerSubtypes(Class<?>... cls) {
         objectMapper.registerSubtypes(cls);
+        clearCaches();
+        return this;
+    }
+
+    /**
+     * enableTypeFirstOutput makes sure the {@link #TYPE_FIELD} is always
+     * the first property of the written objects, so readers can take the
+     * fast path. Jackson already writes type ids included as PROPERTY first,
+     * this moves an existing {@link #TYPE_FIELD} property (EXISTING_PROPERTY
+     * type ids or explicit getters) to the front as well. Call it before
+     * the adapter is used.
+     */
+    public synchronized JsonAdapter enableTypeFirstOutput() {
+        if (!typeFirstOutput) {
+            objectMapper.registerModule(new SimpleModule("TypeFirstOutput").setSerializerModifier(new BeanSerializerModifier() {
+                @Override
+                public List<BeanPropertyWriter> orderProperties(SerializationConfig config, BeanDescription beanDesc,
+                                                                List<BeanPropertyWriter> beanProperties) {
+                    for (int i = 1; i < beanProperties.size(); i++) {
+                        if (TYPE_FIELD.equals(beanProperties.get(i).getName())) {
+                            List<BeanPropertyWriter> ordered = new ArrayList<>(beanProperties);
+                            ordered.add(0, ordered.remove(i));
+                            return ordered;
+                        }
+                    }
+                    return beanProperties;
+                }
+            }));
+            typeFirstOutput = true;
+            clearCaches();
+        }
+        return this;
+    }
+
+    /**
+     * enableAfterburner switches bean (de)serializers to generated bytecode
+     * accessors instead of reflection. Custom (de)serializers and the other
+     * registered modules keep working as before. Call it before the adapter
+     * is used, (de)serializers built earlier are kept by the mapper.
+     */
+    public synchronized JsonAdapter enableAfterburner() {
+        objectMapper.registerModule(new AfterburnerModule());
+        clearCaches();
         return this;
     }
 
@@ -82,11 +424,19 @@ public class JsonAdapter {
             parser = objectMapper.getFactory().createParser(input);
         }
 
+        protected SequentialReader(byte[] input) throws IOException {
+            parser = objectMapper.getFactory().createParser(input);
+        }
+
+        protected SequentialReader(InputStream input) throws IOException {
+            parser = objectMapper.getFactory().createParser(input);
+        }
+
         public <T> T read(Class<T> type) throws IOException {
             findNextObject(parser);
 
             try {
-                return parser.readValueAs(type);
+                return readerFor(type).read(parser);
             } catch (IOException ex) {
                 readRemainderOfFailedAttempt(parser);
                 return null;
@@ -101,7 +451,7 @@ public class JsonAdapter {
             }
 
             try {
-                final T value = parser.readValueAs(type.getReference());
+                final T value = readerFor(type).read(parser);
                 return value;
             } catch (IOException ex) {
                 readRemainderOfFailedAttempt(parser);
@@ -161,36 +511,199 @@ public class JsonAdapter {
         return new SequentialReader(input);
     }
 
+    /**
+     * fromJson constructs a reader object that can read multiple
+     * json objects coming from the provided input after each other,
+     * the bytes are decoded by the parser directly
+     *
+     * @param input input contains the multiobject json
+     * @return returns reader instance
+     * @throws IOException
+     */
+    public SequentialReader fromJson(byte[] input) throws IOException {
+        return new SequentialReader(input);
+    }
+
+    public SequentialReader fromJson(InputStream input) throws IOException {
+        return new SequentialReader(input);
+    }
+
     public <T> T fromJson(String input, TypeInfo<T> outputType) throws IOException {
-        return objectMapper.readValue(input, outputType.getReference());
+        return readerFor(outputType).read(input);
     }
 
     public <T> T fromJson(Reader input, TypeInfo<T> outputType) throws IOException {
-        return objectMapper.readValue(input, outputType.getReference());
+        return readerFor(outputType).read(input);
     }
 
     public <T> T fromJson(String input, Class<T> outputType) throws IOException {
-        return objectMapper.readValue(input, outputType);
+        return readerFor(outputType).read(input);
     }
 
     public <T> T fromJson(Reader input, Class<T> outputType) throws IOException {
-        return objectMapper.readValue(input, outputType);
+        return readerFor(outputType).read(input);
+    }
+
+    public <T> T fromJson(byte[] input, TypeInfo<T> outputType) throws IOException {
+        return readerFor(outputType).read(input);
+    }
+
+    public <T> T fromJson(byte[] input, Class<T> outputType) throws IOException {
+        return readerFor(outputType).read(input);
+    }
+
+    /**
+     * Reads the remaining content of the buffer without changing its
+     * position. Heap buffers are parsed in place, direct buffers are
+     * streamed.
+     */
+    public <T> T fromJson(ByteBuffer input, TypeInfo<T> outputType) throws IOException {
+        return readerFor(outputType).read(input);
+    }
+
+    public <T> T fromJson(ByteBuffer input, Class<T> outputType) throws IOException {
+        return readerFor(outputType).read(input);
+    }
+
+    public <T> T fromJson(InputStream input, TypeInfo<T> outputType) throws IOException {
+        return readerFor(outputType).read(input);
+    }
+
+    public <T> T fromJson(InputStream input, Class<T> outputType) throws IOException {
+        return readerFor(outputType).read(input);
     }
 
     public String toJson(Object object) throws JsonCreateException {
         try {
-            return objectMapper.writerFor(Object.class).writeValueAsString(object);
+            return writerFor(Object.class).getWriter().writeValueAsString(object);
         } catch (JsonProcessingException e) {
             throw new JsonCreateException(e);
         }
     }
 
+    /**
+     * toJson writes UTF-8 encoded json directly into the output stream,
+     * the stream is not closed
+     */
+    public void toJson(Object object, OutputStream output) throws IOException {
+        writerFor(Object.class).write(object, output);
+    }
+
+    /**
+     * toJson writes UTF-8 encoded json at the position of the buffer
+     * and advances the position
+     *
+     * @throws java.nio.BufferOverflowException when the json does not fit
+     */
+    public void toJson(Object object, ByteBuffer output) throws IOException {
+        writerFor(Object.class).write(object, output);
+    }
+
+    /**
+     * toJsonBytes serializes into a reused per thread buffer and returns
+     * a copy of the UTF-8 encoded json
+     */
+    public byte[] toJsonBytes(Object object) throws JsonCreateException {
+        return writerFor(Object.class).writeBytes(object);
+    }
+
+    /**
+     * ndjsonReader reads newline delimited json, one object per line,
+     * directly from the bytes of the input
+     *
+     * @param input input stream, closed together with the reader
+     * @param outputType type of the records
+     * @param errorPolicy what to do with records that can't be parsed
+     * @return reader instance
+     */
+    public <T> NdjsonReader<T> ndjsonReader(InputStream input, Class<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new NdjsonReader<>(new NdjsonFramer(input), readerFor(outputType), errorPolicy);
+    }
+
+    public <T> NdjsonReader<T> ndjsonReader(InputStream input, TypeInfo<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new NdjsonReader<>(new NdjsonFramer(input), readerFor(outputType), errorPolicy);
+    }
+
+    /**
+     * Heap buffers are parsed in place, direct buffers are copied
+     * through a reused buffer
+     */
+    public <T> NdjsonReader<T> ndjsonReader(ByteBuffer input, Class<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new NdjsonReader<>(framer(input), readerFor(outputType), errorPolicy);
+    }
+
+    public <T> NdjsonReader<T> ndjsonReader(ByteBuffer input, TypeInfo<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new NdjsonReader<>(framer(input), readerFor(outputType), errorPolicy);
+    }
+
+    public <T> NdjsonReader<T> ndjsonReader(FileChannel input, Class<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return ndjsonReader(Channels.newInputStream(input), outputType, errorPolicy);
+    }
+
+    public <T> NdjsonReader<T> ndjsonReader(FileChannel input, TypeInfo<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return ndjsonReader(Channels.newInputStream(input), outputType, errorPolicy);
+    }
+
+    /**
+     * parallelNdjsonReader reads newline delimited json and decodes
+     * batches of records in parallel, see {@link ParallelJsonReader}
+     * for the available settings
+     *
+     * @param input input stream, closed together with the reader
+     * @param outputType type of the records
+     * @param errorPolicy what to do with records that can't be parsed
+     * @return reader instance
+     */
+    public <T> ParallelJsonReader<T> parallelNdjsonReader(InputStream input, Class<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new ParallelJsonReader<>(new NdjsonFramer(input), readerFor(outputType), errorPolicy);
+    }
+
+    public <T> ParallelJsonReader<T> parallelNdjsonReader(InputStream input, TypeInfo<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new ParallelJsonReader<>(new NdjsonFramer(input), readerFor(outputType), errorPolicy);
+    }
+
+    /**
+     * parallelJsonReader is the parallel counterpart of {@link SequentialReader},
+     * it reads a sequence of json objects that do not need to be separated
+     * by newlines and decodes them in parallel
+     *
+     * @param input input stream, closed together with the reader
+     * @param outputType type of the objects
+     * @param errorPolicy what to do with objects that can't be parsed
+     * @return reader instance
+     */
+    public <T> ParallelJsonReader<T> parallelJsonReader(InputStream input, Class<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new ParallelJsonReader<>(new NdjsonFramer(input, NdjsonFramer.Boundary.OBJECT), readerFor(outputType), errorPolicy);
+    }
+
+    public <T> ParallelJsonReader<T> parallelJsonReader(InputStream input, TypeInfo<T> outputType, NdjsonReader.ErrorPolicy errorPolicy) {
+        return new ParallelJsonReader<>(new NdjsonFramer(input, NdjsonFramer.Boundary.OBJECT), readerFor(outputType), errorPolicy);
+    }
+
+    private static NdjsonFramer framer(ByteBuffer input) {
+        return input.hasArray()
+                ? new NdjsonFramer(input.slice())
+                : new NdjsonFramer(new ByteBufferBackedInputStream(input.slice()));
+    }
+
+    /**
+     * ndjsonWriter constructs a writer that writes each object as a single
+     * line of json into the output
+     *
+     * @param output output stream, closed together with the writer
+     * @return writer instance
+     * @throws IOException
+     */
+    public NdjsonWriter ndjsonWriter(OutputStream output) throws IOException {
+        return new NdjsonWriter(objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8),
+                writerFor(Object.class).getWriter().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+    }
+
+    /**
+     * isValidJson checks that the input is a single well formed json value
+     * without building a tree, see {@link JsonValidator}
+     */
     public boolean isValidJson(String input) {
-        try {
-            objectMapper.readTree(input);
-            return true;
-        } catch (IOException e) {
-            return false;
-        }
+        return JsonValidator.DEFAULT.isValid(input);
     }
 }
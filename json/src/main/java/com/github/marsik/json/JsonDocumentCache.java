@@ -0,0 +1,103 @@
+package com.github.marsik.json;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+
+/**
+ * Small LRU cache of parsed json documents.
+ *
+ * A document is only parsed into a tree when it is seen for the second
+ * time, a single lookup is cheaper when streamed. The first sighting is
+ * remembered by the length and a 64 bit hash of the document, the text
+ * is kept only with the parsed tree to confirm a hit. Documents longer
+ * than the size limit are never cached.
+ */
+class JsonDocumentCache {
+    private final ObjectMapper objectMapper;
+    private final int maxLength;
+    private final Map<Key, Entry> documents;
+
+    @Value
+    private static class Key {
+        int length;
+        long hash;
+    }
+
+    private static class Entry {
+        // both null until the document is seen for the second time
+        private final String json;
+        private final JsonNode tree;
+
+        Entry(String json, JsonNode tree) {
+            this.json = json;
+            this.tree = tree;
+        }
+    }
+
+    private static final Entry SEEN = new Entry(null, null);
+
+    JsonDocumentCache(ObjectMapper objectMapper, int maxEntries, int maxLength) {
+        this.objectMapper = objectMapper;
+        this.maxLength = maxLength;
+        this.documents = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return parsed document or null when it was not seen often enough yet
+     */
+    JsonNode get(String json) throws IOException {
+        if (json.length() > maxLength) {
+            return null;
+        }
+
+        Key key = new Key(json.length(), hash(json));
+        synchronized (documents) {
+            Entry entry = documents.get(key);
+            if (entry == null) {
+                documents.put(key, SEEN);
+                return null;
+            }
+            if (entry.tree != null && entry.json.equals(json)) {
+                return entry.tree;
+            }
+        }
+
+        // Second sighting, or a different document with the same key
+        JsonNode tree = objectMapper.readTree(json);
+        if (tree != null) {
+            synchronized (documents) {
+                documents.put(key, new Entry(json, tree));
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * String.hashCode (cached by the string) extended by FNV-1a of the
+     * characters to 64 bits.
+     */
+    private static long hash(String json) {
+        int fnv = 0x811c9dc5;
+        for (int i = 0; i < json.length(); i++) {
+            fnv ^= json.charAt(i);
+            fnv *= 0x01000193;
+        }
+        return ((long) json.hashCode() << 32) | (fnv & 0xffffffffL);
+    }
+
+    void clear() {
+        synchronized (documents) {
+            documents.clear();
+        }
+    }
+}
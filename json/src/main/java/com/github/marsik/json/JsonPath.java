@@ -0,0 +1,147 @@
+package com.github.marsik.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * JsonPath is a simple path into a json document, it supports
+ * member and index access only:
+ *
+ * $.name.other[2]
+ * $['name with spaces'][0]
+ *
+ * The path can be evaluated against a parsed tree or against a parser,
+ * the parser is only advanced until the target value is found and
+ * everything else is skipped without being decoded.
+ */
+public class JsonPath {
+    private final String expression;
+    // String for object members, Integer for array indexes
+    private final List<Object> steps;
+
+    private JsonPath(String expression, List<Object> steps) {
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    public static JsonPath compile(String expression) {
+        if (expression == null || !expression.startsWith("$")) {
+            throw new IllegalArgumentException("Json path has to start with $: " + expression);
+        }
+
+        List<Object> steps = new ArrayList<>();
+        int i = 1;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < expression.length() && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == i + 1) {
+                    throw new IllegalArgumentException("Empty member name at " + i + " in json path " + expression);
+                }
+                steps.add(expression.substring(i + 1, end));
+                i = end;
+            } else if (c == '[') {
+                int end = expression.indexOf(']', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed [ at " + i + " in json path " + expression);
+                }
+                String content = expression.substring(i + 1, end).trim();
+                if (content.length() >= 2 && (content.charAt(0) == '\'' || content.charAt(0) == '"')
+                        && content.charAt(content.length() - 1) == content.charAt(0)) {
+                    steps.add(content.substring(1, content.length() - 1));
+                } else {
+                    try {
+                        steps.add(Integer.parseInt(content));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid index " + content + " in json path " + expression);
+                    }
+                }
+                i = end + 1;
+            } else {
+                throw new IllegalArgumentException("Unexpected character " + c + " at " + i + " in json path " + expression);
+            }
+        }
+
+        return new JsonPath(expression, steps);
+    }
+
+    /**
+     * @return the value at the path or null when there is no such value
+     */
+    public JsonNode find(JsonNode root) {
+        JsonNode node = root;
+        for (Object step : steps) {
+            if (node == null) {
+                return null;
+            }
+            if (step instanceof String) {
+                node = node.isObject() ? node.get((String) step) : null;
+            } else {
+                node = node.isArray() ? node.get((Integer) step) : null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Reads the value at the path from a parser that was not advanced yet,
+     * the parser has to have a codec to build the value tree.
+     *
+     * @return the value at the path or null when there is no such value
+     */
+    public JsonNode find(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        for (Object step : steps) {
+            boolean found;
+            if (step instanceof String) {
+                found = token == JsonToken.START_OBJECT && seekMember(parser, (String) step);
+            } else {
+                found = token == JsonToken.START_ARRAY && seekIndex(parser, (Integer) step);
+            }
+
+            if (!found) {
+                return null;
+            }
+            token = parser.currentToken();
+        }
+
+        return token == null ? null : parser.readValueAsTree();
+    }
+
+    private static boolean seekMember(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean match = name.equals(parser.getCurrentName());
+            parser.nextToken();
+            if (match) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private static boolean seekIndex(JsonParser parser, int index) throws IOException {
+        int i = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (i++ == index) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.marsik.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * JsonValidator checks that the input is a single well formed json value
+ * by walking the tokens, no tree is built and string values are not decoded.
+ *
+ * The input must contain exactly one value, empty input and content after
+ * the value are rejected. Optional limits restrict the nesting depth and
+ * the input size (characters for strings, bytes for byte arrays).
+ *
+ * Parsers are created per call, their buffers are recycled by the shared factory.
+ */
+public class JsonValidator {
+    public static final int UNLIMITED = 0;
+
+    public static final JsonValidator DEFAULT = new JsonValidator(UNLIMITED, UNLIMITED);
+
+    // Field names of validated documents should not end up in the string pool
+    private static final JsonFactory factory = new JsonFactory()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+
+    private final int maxDepth;
+    private final long maxSize;
+
+    /**
+     * @param maxDepth maximal nesting of objects and arrays or {@link #UNLIMITED}
+     * @param maxSize maximal input size or {@link #UNLIMITED}
+     */
+    public JsonValidator(int maxDepth, long maxSize) {
+        this.maxDepth = maxDepth;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isValid(String input) {
+        return explain(input) == null;
+    }
+
+    public boolean isValid(byte[] input) {
+        return explain(input) == null;
+    }
+
+    /**
+     * @return description of the first problem or null when the input is valid
+     */
+    public String explain(String input) {
+        if (input == null) {
+            return "No input";
+        }
+        if (maxSize != UNLIMITED && input.length() > maxSize) {
+            return "Input has " + input.length() + " characters, the limit is " + maxSize;
+        }
+
+        try (JsonParser parser = factory.createParser(input)) {
+            return walk(parser);
+        } catch (IOException e) {
+            return describe(e);
+        }
+    }
+
+    /**
+     * @return description of the first problem or null when the input is valid
+     */
+    public String explain(byte[] input) {
+        if (input == null) {
+            return "No input";
+        }
+        if (maxSize != UNLIMITED && input.length > maxSize) {
+            return "Input has " + input.length + " bytes, the limit is " + maxSize;
+        }
+
+        try (JsonParser parser = factory.createParser(input)) {
+            return walk(parser);
+        } catch (IOException e) {
+            return describe(e);
+        }
+    }
+
+    private String walk(JsonParser parser) throws IOException {
+        if (parser.nextToken() == null) {
+            return "No json value found";
+        }
+
+        int depth = 0;
+        JsonToken token = parser.currentToken();
+        while (true) {
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                depth++;
+                if (maxDepth != UNLIMITED && depth > maxDepth) {
+                    return "Nesting is deeper than " + maxDepth + location(parser.getTokenLocation());
+                }
+            } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                depth--;
+            }
+
+            if (depth == 0) {
+                break;
+            }
+            token = parser.nextToken();
+            if (token == null) {
+                return "Unexpected end of input";
+            }
+        }
+
+        if (parser.nextToken() != null) {
+            return "Unexpected content after the json value" + location(parser.getTokenLocation());
+        }
+        return null;
+    }
+
+    private static String describe(IOException e) {
+        if (e instanceof JsonProcessingException) {
+            JsonProcessingException processing = (JsonProcessingException) e;
+            return processing.getOriginalMessage() + location(processing.getLocation());
+        }
+        return e.getMessage();
+    }
+
+    private static String location(JsonLocation location) {
+        if (location == null) {
+            return "";
+        }
+        return " at line " + location.getLineNr() + ", column " + location.getColumnNr();
+    }
+}
@@ -2,9 +2,11 @@ package com.github.marsik.json;
 
 import java.io.IOException;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
@@ -21,13 +23,30 @@ import com.fasterxml.jackson.databind.JsonDeserializer;
  * The JsonRawValue annotation instructs Jackson to insert the content
  * to the output stream as-is - without encoding. This is necessary as
  * the value is already a valid json.
+ *
+ * The subtree is copied token by token into a recycled buffer, no tree
+ * is built. See {@link RawJson} for a holder that can be parsed later.
  */
 public class KeepAsJsonDeserializer extends JsonDeserializer<String> {
+    private static final JsonFactory defaultFactory = new JsonFactory();
+
     @Override
     public String deserialize(JsonParser jp, DeserializationContext ctxt)
             throws IOException, JsonProcessingException {
 
-        TreeNode tree = jp.getCodec().readTree(jp);
-        return tree.toString();
+        return capture(jp);
+    }
+
+    /**
+     * Copies the value starting at the current token as compact json
+     */
+    static String capture(JsonParser jp) throws IOException {
+        JsonFactory factory = jp.getCodec() != null ? jp.getCodec().getFactory() : defaultFactory;
+        SegmentedStringWriter output = new SegmentedStringWriter(factory._getBufferRecycler());
+
+        try (JsonGenerator generator = factory.createGenerator(output)) {
+            generator.copyCurrentStructure(jp);
+        }
+        return output.getAndClear();
     }
 }
@@ -0,0 +1,272 @@
+package com.github.marsik.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits newline delimited input into records on the byte level.
+ *
+ * With {@link Boundary#OBJECT} the records are top level json objects
+ * instead of lines, so concatenated or pretty printed objects can be
+ * framed too. Anything between the objects is skipped, the same way
+ * {@link JsonAdapter.SequentialReader} does it.
+ *
+ * The current record is exposed as a slice (buffer, offset, length) of an
+ * internal buffer that is reused for the following records. Heap byte buffers
+ * are framed in place without copying. Blank lines are skipped and a trailing
+ * carriage return is not part of the record.
+ */
+class NdjsonFramer {
+    enum Boundary {
+        LINE,
+        OBJECT
+    }
+
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final InputStream input;
+    private final Boundary boundary;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private int recordOffset;
+    private int recordLength;
+    private long line = 0;
+    private long newlines = 0;
+
+    // Scan progress of the current record, kept across refills so a long
+    // record read in small chunks is not scanned from its start again
+    private int scanned = 0;
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+
+    NdjsonFramer(InputStream input) {
+        this(input, Boundary.LINE);
+    }
+
+    NdjsonFramer(InputStream input, Boundary boundary) {
+        this.input = input;
+        this.boundary = boundary;
+        this.buffer = new byte[INITIAL_BUFFER];
+        this.position = 0;
+        this.limit = 0;
+        this.eof = false;
+    }
+
+    /**
+     * Frames the remaining content of a heap buffer in place.
+     */
+    NdjsonFramer(ByteBuffer input) {
+        this(input, Boundary.LINE);
+    }
+
+    NdjsonFramer(ByteBuffer input, Boundary boundary) {
+        if (!input.hasArray()) {
+            throw new IllegalArgumentException("Only heap buffers can be framed in place");
+        }
+        this.input = null;
+        this.boundary = boundary;
+        this.buffer = input.array();
+        this.position = input.arrayOffset() + input.position();
+        this.limit = input.arrayOffset() + input.limit();
+        this.eof = true;
+    }
+
+    /**
+     * Move to the next non blank record.
+     *
+     * @return false when the input is exhausted
+     */
+    boolean next() throws IOException {
+        if (boundary == Boundary.OBJECT) {
+            return nextObject();
+        }
+
+        while (true) {
+            int newline = indexOf((byte) '\n', Math.max(position, scanned), limit);
+            if (newline < 0 && !eof) {
+                scanned = limit;
+                fill();
+                continue;
+            }
+
+            if (newline < 0 && position == limit) {
+                return false;
+            }
+
+            int end = newline < 0 ? limit : newline;
+            recordOffset = position;
+            position = newline < 0 ? limit : newline + 1;
+            line++;
+
+            if (end > recordOffset && buffer[end - 1] == '\r') {
+                end--;
+            }
+            recordLength = end - recordOffset;
+
+            if (!isBlank(recordOffset, end)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean nextObject() throws IOException {
+        while (true) {
+            int start = indexOf((byte) '{', position, limit);
+            if (start < 0) {
+                newlines += count((byte) '\n', position, limit);
+                position = limit;
+                if (eof) {
+                    return false;
+                }
+                fill();
+                continue;
+            }
+
+            int end = objectEnd(start);
+            if (end < 0 && !eof) {
+                fill();
+                continue;
+            }
+
+            // A truncated object at the end of the input is still returned
+            // so the parser can report it
+            if (end < 0) {
+                end = limit;
+            }
+
+            newlines += count((byte) '\n', position, start);
+            line = newlines + 1;
+            newlines += count((byte) '\n', start, end);
+
+            recordOffset = start;
+            recordLength = end - start;
+            position = end;
+            return true;
+        }
+    }
+
+    /**
+     * @return index just past the object starting at start or -1 when
+     *         the buffer does not contain the whole object yet
+     */
+    private int objectEnd(int start) {
+        if (scanned <= start) {
+            scanned = start;
+            depth = 0;
+            inString = false;
+            escape = false;
+        }
+
+        for (int i = scanned; i < limit; i++) {
+            byte b = buffer[i];
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (b == '\\') {
+                    escape = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (depth == 0) {
+                    scanned = i + 1;
+                    return i + 1;
+                }
+            }
+        }
+        scanned = limit;
+        return -1;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int offset() {
+        return recordOffset;
+    }
+
+    int length() {
+        return recordLength;
+    }
+
+    /**
+     * @return 1-based line number of the current record
+     */
+    long line() {
+        return line;
+    }
+
+    /**
+     * @return copy of the current record
+     */
+    byte[] copy() {
+        return Arrays.copyOfRange(buffer, recordOffset, recordOffset + recordLength);
+    }
+
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            scanned = Math.max(scanned - position, 0);
+            position = 0;
+        }
+
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int count(byte value, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void close() throws IOException {
+        if (input != null) {
+            input.close();
+        }
+    }
+}
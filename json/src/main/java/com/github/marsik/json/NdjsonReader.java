@@ -0,0 +1,141 @@
+package com.github.marsik.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * NdjsonReader reads newline delimited json (one object per line).
+ *
+ * Records are framed on the byte level and parsed straight from the
+ * input buffer, no String is created for a record. What happens with
+ * a record that can't be parsed is decided by the {@link ErrorPolicy}.
+ *
+ * Instances are created by {@link JsonAdapter#ndjsonReader}.
+ */
+@Slf4j
+public class NdjsonReader<T> implements Iterator<T>, Closeable {
+    public enum ErrorPolicy {
+        /**
+         * Throw {@link NdjsonException} from next(), the iteration ends
+         */
+        FAIL,
+        /**
+         * Silently skip the record
+         */
+        SKIP,
+        /**
+         * Log a warning and skip the record
+         */
+        LOG_AND_SKIP
+    }
+
+    /**
+     * Thrown when a record can't be read and the policy is FAIL.
+     */
+    @Getter
+    public static class NdjsonException extends UncheckedIOException {
+        private final long line;
+
+        public NdjsonException(long line, IOException cause) {
+            super("Invalid json record on line " + line + ": " + cause.getMessage(), cause);
+            this.line = line;
+        }
+    }
+
+    private final NdjsonFramer framer;
+    private final JsonAdapter.TypedReader<T> reader;
+    private final ErrorPolicy errorPolicy;
+
+    private T nextValue;
+    private boolean finished = false;
+
+    NdjsonReader(NdjsonFramer framer, JsonAdapter.TypedReader<T> reader, ErrorPolicy errorPolicy) {
+        this.framer = framer;
+        this.reader = reader;
+        this.errorPolicy = errorPolicy;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextValue != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+
+        try {
+            while (framer.next()) {
+                try {
+                    nextValue = reader.read(framer.buffer(), framer.offset(), framer.length());
+                } catch (IOException e) {
+                    handleError(framer.line(), e);
+                    continue;
+                }
+
+                if (nextValue != null) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        finished = true;
+        return false;
+    }
+
+    private void handleError(long line, IOException e) {
+        switch (errorPolicy) {
+            case FAIL:
+                finished = true;
+                throw new NdjsonException(line, e);
+            case LOG_AND_SKIP:
+                log.warn("Skipping invalid json record on line {}: {}", line, e.getMessage());
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T value = nextValue;
+        nextValue = null;
+        return value;
+    }
+
+    /**
+     * @return sequential stream of the remaining records, closing the stream closes the reader
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        framer.close();
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.marsik.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * NdjsonWriter writes objects as newline delimited json using a single
+ * buffered generator for the whole stream.
+ *
+ * Instances are created by {@link JsonAdapter#ndjsonWriter}.
+ */
+public class NdjsonWriter implements Closeable, Flushable {
+    private final JsonGenerator generator;
+    private final ObjectWriter writer;
+
+    NdjsonWriter(JsonGenerator generator, ObjectWriter writer) {
+        this.generator = generator;
+        this.generator.setRootValueSeparator(null);
+        this.writer = writer;
+    }
+
+    public void write(Object value) throws IOException {
+        writer.writeValue(generator, value);
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
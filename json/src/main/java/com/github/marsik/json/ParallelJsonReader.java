@@ -0,0 +1,318 @@
+package com.github.marsik.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * ParallelJsonReader decodes records on an executor while the input
+ * is being split into records by the calling thread.
+ *
+ * Records are copied into batches of {@link #setBatchSize} records and each
+ * batch is deserialized as a single task. At most {@link #setMaxInFlight}
+ * batches are queued or decoded at any time, the input is not read further
+ * until the consumer takes the results, so the memory stays bounded.
+ *
+ * Results are returned in the input order by default, unordered mode returns
+ * each batch as soon as it is decoded. Errors are handled according to the
+ * {@link NdjsonReader.ErrorPolicy}, with FAIL the exception is thrown once
+ * the records preceding the broken one (in the same batch) were returned
+ * and the iteration ends, the following records are not returned.
+ *
+ * The settings can only be changed before the first record is read.
+ * Instances are created by {@link JsonAdapter#parallelNdjsonReader}
+ * and {@link JsonAdapter#parallelJsonReader}.
+ */
+@Slf4j
+public class ParallelJsonReader<T> implements Iterator<T>, Closeable {
+    private static final int DEFAULT_BATCH_SIZE = 512;
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    private static final int INITIAL_BATCH_BYTES = 64 * 1024;
+
+    private final NdjsonFramer framer;
+    private final JsonAdapter.TypedReader<T> reader;
+    private final NdjsonReader.ErrorPolicy errorPolicy;
+
+    private Executor executor = ForkJoinPool.commonPool();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+    private boolean ordered = true;
+
+    private final Queue<CompletableFuture<Decoded<T>>> pending = new ArrayDeque<>();
+    private final BlockingQueue<CompletableFuture<Decoded<T>>> completed = new LinkedBlockingQueue<>();
+    private int inFlight = 0;
+    private boolean started = false;
+    private boolean inputExhausted = false;
+    private boolean finished = false;
+
+    private Iterator<T> current = Collections.emptyIterator();
+    private NdjsonReader.NdjsonException failure;
+
+    private static class Batch {
+        private byte[] data = new byte[INITIAL_BATCH_BYTES];
+        private int size = 0;
+        private int count = 0;
+        private int[] offsets;
+        private int[] lengths;
+        private long[] lines;
+
+        Batch(int capacity) {
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+            lines = new long[capacity];
+        }
+
+        void add(byte[] buffer, int offset, int length, long line) {
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+            }
+            System.arraycopy(buffer, offset, data, size, length);
+            offsets[count] = size;
+            lengths[count] = length;
+            lines[count] = line;
+            size += length;
+            count++;
+        }
+    }
+
+    private static class Decoded<T> {
+        private final List<T> values;
+        private final NdjsonReader.NdjsonException failure;
+
+        Decoded(List<T> values, NdjsonReader.NdjsonException failure) {
+            this.values = values;
+            this.failure = failure;
+        }
+    }
+
+    ParallelJsonReader(NdjsonFramer framer, JsonAdapter.TypedReader<T> reader, NdjsonReader.ErrorPolicy errorPolicy) {
+        this.framer = framer;
+        this.reader = reader;
+        this.errorPolicy = errorPolicy;
+    }
+
+    /**
+     * @param executor executor decoding the batches, the common fork join pool by default
+     */
+    public ParallelJsonReader<T> setExecutor(Executor executor) {
+        checkNotStarted();
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * @param batchSize maximal number of records decoded by a single task
+     */
+    public ParallelJsonReader<T> setBatchSize(int batchSize) {
+        checkNotStarted();
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param maxInFlight maximal number of batches queued or being decoded at once
+     */
+    public ParallelJsonReader<T> setMaxInFlight(int maxInFlight) {
+        checkNotStarted();
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Number of batches in flight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * @param ordered false returns the batches in the order they were decoded
+     */
+    public ParallelJsonReader<T> setOrdered(boolean ordered) {
+        checkNotStarted();
+        this.ordered = ordered;
+        return this;
+    }
+
+    private void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("Reading has already started");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        started = true;
+
+        while (!current.hasNext()) {
+            if (failure != null) {
+                NdjsonReader.NdjsonException e = failure;
+                stop();
+                throw e;
+            }
+
+            if (finished) {
+                return false;
+            }
+
+            Decoded<T> decoded;
+            try {
+                submitBatches();
+                if (inFlight == 0) {
+                    finished = true;
+                    return false;
+                }
+                decoded = takeBatch();
+            } catch (RuntimeException e) {
+                stop();
+                throw e;
+            }
+
+            current = decoded.values.iterator();
+            failure = decoded.failure;
+        }
+
+        return true;
+    }
+
+    /**
+     * Ends the iteration after a failure, the batches still being decoded
+     * are dropped and the rest of the input is not read.
+     */
+    private void stop() {
+        finished = true;
+        inputExhausted = true;
+        current = Collections.emptyIterator();
+        failure = null;
+        pending.forEach(f -> f.cancel(false));
+        pending.clear();
+        completed.clear();
+        inFlight = 0;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    private void submitBatches() {
+        while (!inputExhausted && inFlight < maxInFlight) {
+            Batch batch = readBatch();
+            if (batch.count == 0) {
+                inputExhausted = true;
+                return;
+            }
+
+            CompletableFuture<Decoded<T>> future = CompletableFuture.supplyAsync(() -> decode(batch), executor);
+            if (ordered) {
+                pending.add(future);
+            } else {
+                future.whenComplete((v, e) -> completed.add(future));
+            }
+            inFlight++;
+        }
+    }
+
+    private Batch readBatch() {
+        Batch batch = new Batch(batchSize);
+        try {
+            while (batch.count < batchSize && batch.size < MAX_BATCH_BYTES && framer.next()) {
+                batch.add(framer.buffer(), framer.offset(), framer.length(), framer.line());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return batch;
+    }
+
+    private Decoded<T> decode(Batch batch) {
+        List<T> values = new ArrayList<>(batch.count);
+        for (int i = 0; i < batch.count; i++) {
+            try {
+                T value = reader.read(batch.data, batch.offsets[i], batch.lengths[i]);
+                if (value != null) {
+                    values.add(value);
+                }
+            } catch (IOException e) {
+                switch (errorPolicy) {
+                    case FAIL:
+                        return new Decoded<>(values, new NdjsonReader.NdjsonException(batch.lines[i], e));
+                    case LOG_AND_SKIP:
+                        log.warn("Skipping invalid json record on line {}: {}", batch.lines[i], e.getMessage());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return new Decoded<>(values, null);
+    }
+
+    private Decoded<T> takeBatch() {
+        CompletableFuture<Decoded<T>> future;
+        try {
+            future = ordered ? pending.remove() : completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for a batch"));
+        }
+        inFlight--;
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return sequential stream of the remaining records, closing the stream closes the reader
+     */
+    public Stream<T> stream() {
+        int characteristics = Spliterator.NONNULL | (ordered ? Spliterator.ORDERED : 0);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, characteristics), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Stops reading the input, batches that are already being decoded
+     * are finished and dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        framer.close();
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.marsik.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * RawJson holds an opaque json value as text. It is captured without
+ * building a tree when the enclosing object is read, written back as-is
+ * and only parsed when the content is actually needed.
+ *
+ * Use in DTO classes like this:
+ *
+ * RawJson payload;
+ *
+ * ...
+ *
+ * Payload p = adapter.fromJson(dto.getPayload().getJson(), Payload.class);
+ */
+@JsonDeserialize(using = RawJson.Deserializer.class)
+@JsonSerialize(using = RawJson.Serializer.class)
+public final class RawJson {
+    private final static ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String json;
+    private volatile JsonNode tree;
+
+    private RawJson(String json) {
+        this.json = json;
+    }
+
+    /**
+     * @param json valid json text, it is not checked
+     */
+    public static RawJson of(String json) {
+        if (json == null) {
+            throw new NullPointerException("json");
+        }
+        return new RawJson(json);
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * @return the content parsed into a tree, the tree is parsed once and kept
+     */
+    public JsonNode asTree() throws IOException {
+        JsonNode result = tree;
+        if (result == null) {
+            result = objectMapper.readTree(json);
+            tree = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof RawJson && json.equals(((RawJson) o).json);
+    }
+
+    @Override
+    public int hashCode() {
+        return json.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+
+    public static class Deserializer extends JsonDeserializer<RawJson> {
+        @Override
+        public RawJson deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            return new RawJson(KeepAsJsonDeserializer.capture(jp));
+        }
+    }
+
+    public static class Serializer extends JsonSerializer<RawJson> {
+        @Override
+        public void serialize(RawJson value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeRawValue(value.json);
+        }
+    }
+}
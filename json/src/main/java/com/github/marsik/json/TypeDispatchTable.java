@@ -0,0 +1,96 @@
+package com.github.marsik.json;
+
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Mapping of type ids to the deserializers of the subtypes of a polymorphic type.
+ *
+ * The subtypes and their ids come from the {@link com.fasterxml.jackson.databind.jsontype.SubtypeResolver}
+ * of the mapper, so registered {@link NamedType}s, {@link com.fasterxml.jackson.annotation.JsonSubTypes}
+ * and {@link com.fasterxml.jackson.annotation.JsonTypeName} are all taken into account. An id used by
+ * more than one class resolves to the most specific one, the same way Jackson does it.
+ */
+@Slf4j
+final class TypeDispatchTable {
+    private TypeDispatchTable() {
+    }
+
+    /**
+     * Select the subtypes that can be returned when reading the target type.
+     *
+     * @return type id to deserializer map or null when the target does not use
+     *         a hidden {@link JsonAdapter#TYPE_FIELD} property for type ids
+     */
+    static Map<String, JsonDeserializer<Object>> dispatchFor(ObjectMapper objectMapper, JavaType target) {
+        if (target.isContainerType() || target.isJavaLangObject()) {
+            return null;
+        }
+
+        DeserializationConfig config = objectMapper.getDeserializationConfig();
+        AnnotatedClass annotated = config.introspectClassAnnotations(target).getClassInfo();
+        JsonTypeInfo info = annotated.getAnnotation(JsonTypeInfo.class);
+
+        if (info == null
+                || info.use() != JsonTypeInfo.Id.NAME
+                || info.visible()
+                || (info.include() != JsonTypeInfo.As.PROPERTY && info.include() != JsonTypeInfo.As.EXISTING_PROPERTY)) {
+            return null;
+        }
+
+        String property = info.property().isEmpty() ? info.use().getDefaultPropertyName() : info.property();
+        if (!JsonAdapter.TYPE_FIELD.equals(property)) {
+            return null;
+        }
+
+        Map<String, Class<?>> types = new LinkedHashMap<>();
+        for (NamedType subtype : config.getSubtypeResolver().collectAndResolveSubtypesByTypeId(config, annotated)) {
+            Class<?> type = subtype.getType();
+            String id = subtype.hasName() ? subtype.getName() : defaultTypeId(type);
+            Class<?> previous = types.get(id);
+            if (previous == null || !type.isAssignableFrom(previous)) {
+                types.put(id, type);
+            }
+        }
+
+        DefaultDeserializationContext context = ((DefaultDeserializationContext) objectMapper.getDeserializationContext())
+                .createInstance(config, null, objectMapper.getInjectableValues());
+
+        Map<String, JsonDeserializer<Object>> dispatch = new HashMap<>();
+        for (Map.Entry<String, Class<?>> entry : types.entrySet()) {
+            Class<?> type = entry.getValue();
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                continue;
+            }
+
+            try {
+                dispatch.put(entry.getKey(), context.findContextualValueDeserializer(objectMapper.constructType(type), null));
+            } catch (JsonMappingException e) {
+                log.debug("No deserializer for subtype {}: {}", type.getName(), e.getMessage());
+            }
+        }
+        return dispatch.isEmpty() ? null : Collections.unmodifiableMap(dispatch);
+    }
+
+    /**
+     * Id Jackson uses for a subtype without a name, the class name without the package
+     */
+    private static String defaultTypeId(Class<?> type) {
+        String className = type.getName();
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+}
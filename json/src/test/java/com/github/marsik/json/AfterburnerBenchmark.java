@@ -0,0 +1,115 @@
+package com.github.marsik.json;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import lombok.Data;
+
+/**
+ * Compares the default reflection based bean (de)serializers with
+ * {@link JsonAdapter#enableAfterburner()}.
+ *
+ * Run with:
+ *
+ * mvn -pl json test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.github.marsik.json.AfterburnerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AfterburnerBenchmark {
+    @Data
+    public static class Release {
+        private String name;
+        private int major;
+        private int minor;
+        private boolean released;
+        private LocalDate date;
+        private Optional<String> codename = Optional.empty();
+        private List<String> components = new ArrayList<>();
+    }
+
+    @Param({"false", "true"})
+    public boolean afterburner;
+
+    private JsonAdapter adapter;
+    private JsonAdapter.TypedReader<Release> reader;
+    private List<Release> releases;
+    private String json;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        adapter = new JsonAdapter();
+        if (afterburner) {
+            adapter.enableAfterburner();
+        }
+        reader = adapter.readerFor(Release.class);
+
+        releases = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Release release = new Release();
+            release.setName("ovirt-4." + i);
+            release.setMajor(4);
+            release.setMinor(i);
+            release.setReleased(i % 2 == 0);
+            release.setDate(LocalDate.of(2017, 1, 1).plusDays(i));
+            release.setCodename(Optional.of("release " + i));
+            release.setComponents(Arrays.asList("engine", "vdsm", "ui"));
+            releases.add(release);
+        }
+
+        json = adapter.toJson(releases.get(0));
+        bytes = adapter.toJsonBytes(releases.get(0));
+    }
+
+    @Benchmark
+    public String serialize() throws IOException {
+        return adapter.toJson(releases.get(0));
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws IOException {
+        return adapter.toJsonBytes(releases);
+    }
+
+    @Benchmark
+    public Release deserialize() throws IOException {
+        return reader.read(json);
+    }
+
+    @Benchmark
+    public Release deserializeBytes() throws IOException {
+        return reader.read(bytes, 0, bytes.length);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AfterburnerBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}